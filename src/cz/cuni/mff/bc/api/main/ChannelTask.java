@@ -0,0 +1,39 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package cz.cuni.mff.bc.api.main;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Base class of the channel tasks which implements the loading and saving of
+ * the data files through the channel methods
+ *
+ * @author Jakub Hava
+ */
+public abstract class ChannelTask implements IChannelTask {
+
+    private static final long serialVersionUID = 1L;
+
+    @Override
+    public void loadData(Path from) {
+        try (FileChannel channel = FileChannel.open(from, StandardOpenOption.READ)) {
+            loadData(channel);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Problem with loading data from " + from, e);
+        }
+    }
+
+    @Override
+    public void saveData(Path to) {
+        try (FileChannel channel = FileChannel.open(to, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            saveData(channel);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Problem with saving data to " + to, e);
+        }
+    }
+}
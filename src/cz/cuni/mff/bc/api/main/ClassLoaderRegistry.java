@@ -0,0 +1,176 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package cz.cuni.mff.bc.api.main;
+
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Registry of class loaders used for the project jars. One class loader is
+ * kept for each project jar hash, so the jar is opened and the classes are
+ * defined only once for all tasks of the project. Class loaders are reference
+ * counted and a class loader which is not used by any task is closed once it
+ * has been idle longer than the idle timeout
+ *
+ * @author Jakub Hava
+ */
+public class ClassLoaderRegistry {
+
+    private static final Logger LOG = Logger.getLogger(ClassLoaderRegistry.class.getName());
+    private static final long DEFAULT_IDLE_TIMEOUT = 60000;
+    private static final ClassLoaderRegistry DEFAULT = new ClassLoaderRegistry(DEFAULT_IDLE_TIMEOUT);
+    private final HashMap<String, Entry> entries = new HashMap<>();
+    private final HashMap<ProjectUID, String> projects = new HashMap<>();
+    private final long idleTimeout;
+
+    private static class Entry {
+
+        private final URLClassLoader classLoader;
+        private Class<? extends ITask> compClass;
+        private int references = 0;
+        private long idleSince;
+
+        Entry(URLClassLoader classLoader) {
+            this.classLoader = classLoader;
+            this.idleSince = System.currentTimeMillis();
+        }
+
+        void close() {
+            try {
+                classLoader.close();
+            } catch (IOException e) {
+                LOG.log(Level.FINE, "Class loader couldn''t be closed: {0}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Constructor
+     *
+     * @param idleTimeout time in milliseconds after which the unused class
+     * loader is closed
+     */
+    public ClassLoaderRegistry(long idleTimeout) {
+        if (idleTimeout < 0) {
+            throw new IllegalArgumentException("Idle timeout has to be higher then or equal to 0");
+        }
+        this.idleTimeout = idleTimeout;
+    }
+
+    /**
+     * Gets the registry shared by the whole application
+     *
+     * @return default registry
+     */
+    public static ClassLoaderRegistry getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * Gets the computation class of the project and increases the number of
+     * tasks using its class loader. Every call of this method has to be
+     * followed by the call of release method once the task is finished
+     *
+     * @param projectUID unique ID of the project
+     * @param projectJar path to the project jar
+     * @param hash SHA-256 hash of the project jar
+     * @return computation class of the project
+     * @throws IOException
+     * @throws IllegalArgumentException
+     */
+    public synchronized Class<? extends ITask> acquire(ProjectUID projectUID, Path projectJar, String hash) throws IOException, IllegalArgumentException {
+        closeIdle();
+        Entry entry = getEntry(projectJar, hash);
+        if (entry.compClass == null) {
+            String className = JarTools.getAttributeFromManifest(projectJar, "Main-Comp-Class");
+            if (className == null) {
+                throw new IllegalArgumentException("Path to main computation class has to be specified in the manifest file");
+            }
+            try {
+                entry.compClass = entry.classLoader.loadClass(className).asSubclass(ITask.class);
+            } catch (ClassNotFoundException | ClassCastException e) {
+                throw new IllegalArgumentException("Computation class is not present in jar file or doesn't implement ITask");
+            }
+        }
+        String previous = projects.put(projectUID, hash);
+        if (previous != null && !previous.equals(hash)) {
+            closeIfIdle(previous);
+        }
+        entry.references++;
+        return entry.compClass;
+    }
+
+    /**
+     * Decreases the number of tasks using the class loader of the project
+     * jar. The class loader is closed once it has been idle longer than the
+     * idle timeout
+     *
+     * @param hash SHA-256 hash of the project jar
+     */
+    public synchronized void release(String hash) {
+        Entry entry = entries.get(hash);
+        if (entry != null && entry.references > 0) {
+            entry.references--;
+            if (entry.references == 0) {
+                entry.idleSince = System.currentTimeMillis();
+            }
+        }
+        closeIdle();
+    }
+
+    /**
+     * Invalidates the class loader of the project. The class loader is closed
+     * immediately if no task uses it
+     *
+     * @param projectUID unique ID of the project
+     */
+    public synchronized void invalidate(ProjectUID projectUID) {
+        String hash = projects.remove(projectUID);
+        if (hash != null) {
+            closeIfIdle(hash);
+        }
+    }
+
+    /**
+     * Closes all class loaders which have been idle longer than the idle
+     * timeout
+     */
+    public synchronized void closeIdle() {
+        long now = System.currentTimeMillis();
+        for (Iterator<Entry> it = entries.values().iterator(); it.hasNext();) {
+            Entry entry = it.next();
+            if (entry.references == 0 && now - entry.idleSince >= idleTimeout) {
+                entry.close();
+                it.remove();
+            }
+        }
+    }
+
+    private void closeIfIdle(String hash) {
+        if (projects.containsValue(hash)) {
+            return;
+        }
+        Entry entry = entries.get(hash);
+        if (entry != null && entry.references == 0) {
+            entry.close();
+            entries.remove(hash);
+        }
+    }
+
+    private Entry getEntry(Path projectJar, String hash) throws IOException {
+        Entry entry = entries.get(hash);
+        if (entry == null) {
+            entry = new Entry(new URLClassLoader(new URL[]{projectJar.toUri().toURL()}));
+            entries.put(hash, entry);
+        }
+        return entry;
+    }
+}
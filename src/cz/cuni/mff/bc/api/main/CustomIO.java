@@ -9,11 +9,19 @@ import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.FilenameFilter;
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.SimpleFileVisitor;
 import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipException;
 import java.util.zip.ZipFile;
@@ -27,6 +35,8 @@ import java.util.zip.ZipOutputStream;
  */
 public class CustomIO {
 
+    private static final ForkJoinPool extractPool = new ForkJoinPool();
+
     /**
      * Checks if the project jar file exists and if is valid jar file
      *
@@ -114,6 +124,50 @@ public class CustomIO {
         return file.getName().substring(dotIndex);
     }
 
+    /**
+     * Computes the SHA-256 hash of the file
+     *
+     * @param file path to the file
+     * @return hexadecimal SHA-256 hash of the file
+     * @throws IOException
+     */
+    public static String getFileHash(Path file) throws IOException {
+        try (InputStream in = Files.newInputStream(file)) {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] buffer = new byte[8192];
+            int n;
+            while ((n = in.read(buffer)) > 0) {
+                digest.update(buffer, 0, n);
+            }
+            return toHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException("SHA-256 algorithm is not available", e);
+        }
+    }
+
+    /**
+     * Computes the SHA-256 hash of the data
+     *
+     * @param data data to be hashed
+     * @return hexadecimal SHA-256 hash of the data
+     * @throws IOException
+     */
+    public static String getHash(byte[] data) throws IOException {
+        try {
+            return toHex(MessageDigest.getInstance("SHA-256").digest(data));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException("SHA-256 algorithm is not available", e);
+        }
+    }
+
+    private static String toHex(byte[] hash) {
+        StringBuilder sb = new StringBuilder();
+        for (byte b : hash) {
+            sb.append(String.format("%02x", b));
+        }
+        return sb.toString();
+    }
+
     /**
      * Extracts zip file do destination folder
      *
@@ -149,6 +203,122 @@ public class CustomIO {
         }
     }
 
+    /**
+     * Extracts zip file to destination folder in parallel. Entries are read
+     * using random access to the zip file and extracted concurrently by the
+     * fork/join pool. Folders for nested entries are created as needed
+     *
+     * @param zip zip file location
+     * @param dest destination folder
+     * @param pattern only entries which name matches the pattern are
+     * extracted, null to extract all entries
+     * @throws IOException
+     */
+    public static void extractZipFileParallel(File zip, File dest, String pattern) throws IOException {
+        try (ZipFile zipFile = new ZipFile(zip)) {
+            if (!dest.exists()) {
+                dest.mkdirs();
+            }
+            ArrayList<ZipEntry> entries = new ArrayList<>();
+            Enumeration<? extends ZipEntry> en = zipFile.entries();
+            while (en.hasMoreElements()) {
+                ZipEntry entry = en.nextElement();
+                if (pattern == null || entry.getName().matches(pattern)) {
+                    entries.add(entry);
+                }
+            }
+            extractPool.invoke(new ExtractAction(zipFile, dest.getCanonicalFile(), entries, 0, entries.size()));
+        } catch (ZipException e) {
+            throw new IOException("Problem with opening project archive" + zip.getName(), e);
+        } catch (RuntimeException e) {
+            // fork/join pool may wrap the exception thrown by the worker again
+            for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+                if (cause instanceof ExtractException) {
+                    throw ((ExtractException) cause).getCause();
+                }
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Unchecked wrapper of the exception thrown while extracting the entry
+     */
+    private static class ExtractException extends RuntimeException {
+
+        private static final long serialVersionUID = 1L;
+
+        ExtractException(IOException cause) {
+            super(cause);
+        }
+
+        @Override
+        public synchronized IOException getCause() {
+            return (IOException) super.getCause();
+        }
+    }
+
+    /**
+     * Extracts the range of entries, splits the range if it is too big
+     */
+    private static class ExtractAction extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+        private static final int THRESHOLD = 4;
+        private final ZipFile zipFile;
+        private final File dest;
+        private final List<ZipEntry> entries;
+        private final int from;
+        private final int to;
+
+        ExtractAction(ZipFile zipFile, File dest, List<ZipEntry> entries, int from, int to) {
+            this.zipFile = zipFile;
+            this.dest = dest;
+            this.entries = entries;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= THRESHOLD) {
+                for (int i = from; i < to; i++) {
+                    try {
+                        extractEntry(zipFile, entries.get(i), dest);
+                    } catch (IOException e) {
+                        throw new ExtractException(e);
+                    }
+                }
+            } else {
+                int middle = (from + to) >>> 1;
+                invokeAll(new ExtractAction(zipFile, dest, entries, from, middle),
+                        new ExtractAction(zipFile, dest, entries, middle, to));
+            }
+        }
+    }
+
+    private static void extractEntry(ZipFile zipFile, ZipEntry entry, File dest) throws IOException {
+        File newFile = new File(dest, entry.getName()).getCanonicalFile();
+        if (!newFile.toPath().startsWith(dest.toPath())) {
+            throw new IOException("Entry " + entry.getName() + " is outside of the destination folder");
+        }
+        if (entry.isDirectory()) {
+            newFile.mkdirs();
+            return;
+        }
+        newFile.getParentFile().mkdirs();
+        try (InputStream in = zipFile.getInputStream(entry);
+                FileOutputStream fos = new FileOutputStream(newFile)) {
+            byte[] buffer = new byte[65536];
+            int len;
+            while ((len = in.read(buffer)) > 0) {
+                fos.write(buffer, 0, len);
+            }
+        } catch (IOException e) {
+            throw new IOException("Problem with extracting file " + entry.getName() + " from archive " + zipFile.getName(), e);
+        }
+    }
+
     private static void appendToZip(File file, ZipOutputStream zos) throws IOException {
         String name = file.getName();
         ZipEntry entry = new ZipEntry(name);
@@ -178,6 +348,20 @@ public class CustomIO {
         }
     }
 
+    /**
+     * Zips the files in array to one output zip file. Files are compressed in
+     * blocks concurrently and files which are already compressed are stored
+     * without compression
+     *
+     * @param zip destination zip file
+     * @param files array of files to be zipped
+     * @param level compression level from 0 to 9 or -1 for default level
+     * @throws IOException
+     */
+    public static void zipFilesParallel(File zip, File[] files, int level) throws IOException {
+        new ParallelZipWriter(level).write(zip, files);
+    }
+
     /**
      * Creates the folder
      *
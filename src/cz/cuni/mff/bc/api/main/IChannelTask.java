@@ -0,0 +1,35 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package cz.cuni.mff.bc.api.main;
+
+import java.io.IOException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Extended task interface which reads and writes the data through the
+ * channels. Task data which arrive over the network or are kept in memory can
+ * be calculated without creating files on the disk
+ *
+ * @author Jakub Hava
+ */
+public interface IChannelTask extends ITask {
+
+    /**
+     * Loads the data
+     *
+     * @param from channel from which the data are read
+     * @throws IOException
+     */
+    public void loadData(ReadableByteChannel from) throws IOException;
+
+    /**
+     * Saves the data
+     *
+     * @param to channel to which the data are written
+     * @throws IOException
+     */
+    public void saveData(WritableByteChannel to) throws IOException;
+}
@@ -0,0 +1,22 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package cz.cuni.mff.bc.api.main;
+
+/**
+ * Extended task interface which reads the input data from the memory mapped
+ * file instead of loading them to the heap
+ *
+ * @author Jakub Hava
+ */
+public interface IMappedTask extends ITask {
+
+    /**
+     * Loads the data. The mapping is valid only until the task is finished,
+     * so the task must not keep the buffers after its calculation
+     *
+     * @param from memory mapped data file
+     */
+    public void loadData(MappedTaskData from);
+}
@@ -37,6 +37,18 @@ public interface IServer extends Remote {
      */
     public void setClientsCoresLimit(String clientName, int cores) throws RemoteException;
 
+    /**
+     * Sets the client's limit of the inline task data. Input data of the tasks
+     * sent to the client which are not larger than the limit are carried
+     * inline in the task, results are carried inline by the client in the same
+     * way. Limit 0 disables the inline data
+     *
+     * @param clientName client's name
+     * @param bytes maximal size of the inline data in bytes
+     * @throws RemoteException
+     */
+    public void setClientsInlineLimit(String clientName, int bytes) throws RemoteException;
+
     /**
      * Gets task from the server
      *
@@ -48,6 +60,22 @@ public interface IServer extends Remote {
      */
     public Task getTask(String clientName, ProjectUID projectUID) throws RemoteException;
 
+    /**
+     * Gets several tasks from the server in one call. The server sizes the
+     * batch so that the tasks fit into the client's cores and memory limits,
+     * taking into account cores, memory and time declared by each task. The
+     * returned list contains at most maxTasks tasks and it is empty if there
+     * are no tasks available for the client
+     *
+     * @param clientName client's name
+     * @param projectUID project unique ID which tells from which project will
+     * be the tasks downloaded
+     * @param maxTasks maximal number of tasks to be returned
+     * @return list of tasks
+     * @throws RemoteException
+     */
+    public ArrayList<Task> getTasks(String clientName, ProjectUID projectUID, int maxTasks) throws RemoteException;
+
     /**
      * Saves the completed task on the server
      *
@@ -57,6 +85,17 @@ public interface IServer extends Remote {
      */
     public void saveCompletedTask(String clientName, Task task) throws RemoteException;
 
+    /**
+     * Saves several completed tasks on the server in one call
+     *
+     * @param clientName client's name
+     * @param tasks tasks to be saved
+     * @return list of acknowledgements, the i-th item is true if the i-th task
+     * has been saved on the server, false if it has been rejected
+     * @throws RemoteException
+     */
+    public ArrayList<Boolean> saveCompletedTasks(String clientName, ArrayList<Task> tasks) throws RemoteException;
+
     /**
      * Checks if the project exists on the server
      *
@@ -92,6 +131,111 @@ public interface IServer extends Remote {
     @Asynchronous
     public Pipe uploadProject(String clientName, String projectName, int priority, int cores, int memory, int time, Pipe pipe) throws RemoteException;
 
+    /**
+     * Uploads the project on the server. Data in the pipe are encoded by the
+     * given codec
+     *
+     * @param clientName client's name
+     * @param projectName project name
+     * @param priority tasks priority
+     * @param cores number of cores used by the tasks
+     * @param memory amount of memory used by the tasks
+     * @param time average time of task computation
+     * @param codec name of the codec used to encode the data
+     * @param pipe pipe used to transfer the data files
+     * @return pipe for the other side of the connection
+     * @throws RemoteException
+     */
+    @Asynchronous
+    public Pipe uploadProject(String clientName, String projectName, int priority, int cores, int memory, int time, String codec, Pipe pipe) throws RemoteException;
+
+    /**
+     * Prepares the server for the project uploaded in several segments at once
+     *
+     * @param clientName client's name
+     * @param projectName project name
+     * @param priority tasks priority
+     * @param cores number of cores used by the tasks
+     * @param memory amount of memory used by the tasks
+     * @param time average time of task computation
+     * @param size size of the uploaded file in bytes
+     * @throws RemoteException
+     */
+    public void prepareSegmentedUpload(String clientName, String projectName, int priority, int cores, int memory, int time, long size) throws RemoteException;
+
+    /**
+     * Uploads one segment of the project. The segment is written to the given
+     * position of the uploaded file
+     *
+     * @param clientName client's name
+     * @param projectName project name
+     * @param offset position of the segment in the uploaded file
+     * @param length length of the segment in bytes
+     * @param pipe pipe used to transfer the data files
+     * @return pipe for the other side of the connection
+     * @throws RemoteException
+     */
+    @Asynchronous
+    public Pipe uploadProjectSegment(String clientName, String projectName, long offset, long length, Pipe pipe) throws RemoteException;
+
+    /**
+     * Finishes the project uploaded in several segments and starts its
+     * processing on the server
+     *
+     * @param clientName client's name
+     * @param projectName project name
+     * @throws RemoteException
+     */
+    public void finishSegmentedUpload(String clientName, String projectName) throws RemoteException;
+
+    /**
+     * Gets the chunks which are not stored on the server. Chunks of uploaded
+     * projects are kept on the server, so only the changed chunks have to be
+     * uploaded again when the project is uploaded with slightly changed data
+     *
+     * @param clientName client's name
+     * @param chunkHashes SHA-256 hashes of the chunks
+     * @return hashes of the chunks which are not stored on the server
+     * @throws RemoteException
+     */
+    public ArrayList<String> getMissingChunks(String clientName, ArrayList<String> chunkHashes) throws RemoteException;
+
+    /**
+     * Uploads the chunks to the server. Each chunk is sent as its hash written
+     * by writeUTF, its length written by writeInt and the chunk data. Empty
+     * hash marks the end of the upload, after which the server verifies the
+     * hashes of the received chunks and writes the number of stored chunks to
+     * the pipe
+     *
+     * @param clientName client's name
+     * @param pipe pipe used to transfer the chunks
+     * @return pipe for the other side of the connection
+     * @throws RemoteException
+     */
+    @Asynchronous
+    public Pipe uploadChunks(String clientName, Pipe pipe) throws RemoteException;
+
+    /**
+     * Assembles the project jar and data from the chunks stored on the server
+     * and starts the processing of the project
+     *
+     * @param clientName client's name
+     * @param projectName project name
+     * @param priority tasks priority
+     * @param cores number of cores used by the tasks
+     * @param memory amount of memory used by the tasks
+     * @param time average time of task computation
+     * @param jarChunks hashes of the project jar chunks in the order of the
+     * file
+     * @param dataChunks hashes of the project data chunks in the order of the
+     * file
+     * @return true if the project has been assembled, false if some chunk is
+     * missing on the server
+     * @throws RemoteException
+     */
+    public boolean uploadProjectFromChunks(String clientName, String projectName, int priority, int cores, int memory, int time,
+            ArrayList<String> jarChunks, ArrayList<String> dataChunks) throws RemoteException;
+
     /**
      * Downloads the complete project
      *
@@ -104,6 +248,58 @@ public interface IServer extends Remote {
     @Asynchronous
     public Pipe downloadProject(String clientName, String projectName, Pipe pipe) throws RemoteException;
 
+    /**
+     * Downloads the complete project starting from the given offset. It is
+     * used to resume interrupted downloading
+     *
+     * @param clientName client's name
+     * @param projectName project name
+     * @param offset number of bytes to skip from the beginning of the file
+     * @param pipe pipe used to transfer the data files
+     * @return pipe for the other side of the connection
+     * @throws RemoteException
+     */
+    @Asynchronous
+    public Pipe downloadProject(String clientName, String projectName, long offset, Pipe pipe) throws RemoteException;
+
+    /**
+     * Downloads the complete project starting from the given offset. Data in
+     * the pipe are encoded by the given codec
+     *
+     * @param clientName client's name
+     * @param projectName project name
+     * @param offset number of bytes to skip from the beginning of the file
+     * @param codec name of the codec used to encode the data
+     * @param pipe pipe used to transfer the data files
+     * @return pipe for the other side of the connection
+     * @throws RemoteException
+     */
+    @Asynchronous
+    public Pipe downloadProject(String clientName, String projectName, long offset, String codec, Pipe pipe) throws RemoteException;
+
+    /**
+     * Gets the names of the codecs which the server supports for the
+     * transfers
+     *
+     * @return names of the supported codecs
+     * @throws RemoteException
+     */
+    public ArrayList<String> getSupportedCodecs() throws RemoteException;
+
+    /**
+     * Downloads one segment of the complete project
+     *
+     * @param clientName client's name
+     * @param projectName project name
+     * @param offset position of the segment in the project file
+     * @param length length of the segment in bytes
+     * @param pipe pipe used to transfer the data files
+     * @return pipe for the other side of the connection
+     * @throws RemoteException
+     */
+    @Asynchronous
+    public Pipe downloadProjectSegment(String clientName, String projectName, long offset, long length, Pipe pipe) throws RemoteException;
+
     /**
      * Downloads the project jar only
      *
@@ -115,6 +311,29 @@ public interface IServer extends Remote {
     @Asynchronous
     public Pipe downloadProjectJar(ProjectUID projectUID, Pipe pipe) throws RemoteException;
 
+    /**
+     * Downloads the project jar only starting from the given offset. It is
+     * used to resume interrupted downloading
+     *
+     * @param projectUID unique ID of the project
+     * @param offset number of bytes to skip from the beginning of the file
+     * @param pipe pipe used to transfer the data files
+     * @return pipe for the other side of the connection
+     * @throws RemoteException
+     */
+    @Asynchronous
+    public Pipe downloadProjectJar(ProjectUID projectUID, long offset, Pipe pipe) throws RemoteException;
+
+    /**
+     * Gets the SHA-256 hash of the project jar. It is used as a key to the jar
+     * cache on the client
+     *
+     * @param projectUID unique ID of the project
+     * @return hexadecimal SHA-256 hash of the project jar
+     * @throws RemoteException
+     */
+    public String getProjectJarHash(ProjectUID projectUID) throws RemoteException;
+
     /**
      * Checks it the project is ready for download
      *
@@ -135,6 +354,18 @@ public interface IServer extends Remote {
      */
     public long getProjectFileSize(String clientName, String projectName) throws RemoteException;
 
+    /**
+     * Gets the SHA-256 hash of the complete project file. It is used to
+     * verify that the partially downloaded file belongs to the same project
+     * file before the downloading is resumed
+     *
+     * @param clientName client's name
+     * @param projectName project name
+     * @return hexadecimal SHA-256 hash of the project file
+     * @throws RemoteException
+     */
+    public String getProjectFileHash(String clientName, String projectName) throws RemoteException;
+
     /**
      * Gets the unique ID of project which task will be calculated and
      * associated with the client
@@ -146,7 +377,8 @@ public interface IServer extends Remote {
     public ProjectUID getProjectIdBeforeCalculation(String clientName) throws RemoteException;
 
     /**
-     * Gets the list of client's projects
+     * Gets the list of client's projects. Cache hits and misses of the
+     * projects are taken from the result cache of the server
      *
      * @param clientName client's name
      * @return the list of the projects
@@ -218,6 +450,42 @@ public interface IServer extends Remote {
      */
     public ArrayList<TaskID> sendTasksInCalculation(String clientName, ArrayList<TaskID> tasksInCalculation) throws RemoteException;
 
+    /**
+     * Sends to the server the change of tasks calculated on the client since
+     * the epoch acknowledged by the server. The server applies the delta only
+     * if its base epoch is equal to the last epoch acknowledged to the client,
+     * otherwise it requires the full resynchronization. Full delta replaces
+     * all tasks associated with the client. Each task to terminate is sent to
+     * the client only once, full delta returns all of them again
+     *
+     * @param clientName client's name
+     * @param delta change of the tasks calculated on the client
+     * @return reply with the new acknowledged epoch and the new tasks which
+     * calculation is supposed to be terminated
+     * @throws RemoteException
+     */
+    public TasksDeltaReply sendTasksDelta(String clientName, TasksDelta delta) throws RemoteException;
+
+    /**
+     * Registers the listener which is notified immediately when the tasks
+     * calculated on the client become obsolete. The listener is exported to
+     * the server as the remote object. Previously registered listener of the
+     * client is replaced
+     *
+     * @param clientName client's name
+     * @param listener task event listener
+     * @throws RemoteException
+     */
+    public void registerTaskEventListener(String clientName, ITaskEventListener listener) throws RemoteException;
+
+    /**
+     * Unregisters the task event listener of the client
+     *
+     * @param clientName client's name
+     * @throws RemoteException
+     */
+    public void unregisterTaskEventListener(String clientName) throws RemoteException;
+
     /**
      * Unassociates the task from client and puts it again back to the tasks
      * pool on the server
@@ -236,4 +504,32 @@ public interface IServer extends Remote {
      * @throws RemoteException
      */
     public void markProjectAsCorrupted(String clientName, String projectName) throws RemoteException;
+
+    /**
+     * Enables or disables the result memoization of the project. If it is
+     * enabled, the result of the task with the same project jar, computation
+     * class and input data as some previously calculated task is taken from
+     * the result cache instead of scheduling the task. Cache hits and misses
+     * are reported in the project info
+     *
+     * @param clientName client's name
+     * @param projectName project name
+     * @param enabled true if the memoization should be enabled
+     * @throws RemoteException
+     */
+    public void setResultMemoization(String clientName, String projectName, boolean enabled) throws RemoteException;
+
+    /**
+     * Enables or disables the speculative execution of the project. If it is
+     * enabled, the task running much longer than expected is leased again to
+     * the idle client. The first returned result is accepted and the other
+     * copies are returned to their clients as the tasks to terminate by
+     * sendTasksInCalculation and sendTasksDelta
+     *
+     * @param clientName client's name
+     * @param projectName project name
+     * @param enabled true if the speculative execution should be enabled
+     * @throws RemoteException
+     */
+    public void setSpeculativeExecution(String clientName, String projectName, boolean enabled) throws RemoteException;
 }
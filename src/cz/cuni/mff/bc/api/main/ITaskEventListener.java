@@ -0,0 +1,76 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package cz.cuni.mff.bc.api.main;
+
+import java.rmi.Remote;
+import java.rmi.RemoteException;
+import org.cojen.dirmi.Asynchronous;
+
+/**
+ * Remote callback interface registered by the client on the server. The
+ * server calls it immediately when the tasks calculated on the client become
+ * obsolete, so the client doesn't have to wait for the next synchronization of
+ * the tasks in calculation
+ *
+ * @author Jakub Hava
+ */
+public interface ITaskEventListener extends Remote {
+
+    /**
+     * Called when the task is supposed to be terminated, for example when the
+     * task has been already completed by another client
+     *
+     * @param taskID unique ID of the task
+     * @throws RemoteException
+     */
+    @Asynchronous
+    public void taskCancelled(TaskID taskID) throws RemoteException;
+
+    /**
+     * Called when the project has been cancelled
+     *
+     * @param projectUID unique ID of the project
+     * @throws RemoteException
+     */
+    @Asynchronous
+    public void projectCancelled(ProjectUID projectUID) throws RemoteException;
+
+    /**
+     * Called when the project has been paused
+     *
+     * @param projectUID unique ID of the project
+     * @throws RemoteException
+     */
+    @Asynchronous
+    public void projectPaused(ProjectUID projectUID) throws RemoteException;
+
+    /**
+     * Called when the paused project has been resumed
+     *
+     * @param projectUID unique ID of the project
+     * @throws RemoteException
+     */
+    @Asynchronous
+    public void projectResumed(ProjectUID projectUID) throws RemoteException;
+
+    /**
+     * Called when the project has been marked as corrupted
+     *
+     * @param projectUID unique ID of the project
+     * @throws RemoteException
+     */
+    @Asynchronous
+    public void projectCorrupted(ProjectUID projectUID) throws RemoteException;
+
+    /**
+     * Called when the project has been uploaded, so the project with the same
+     * unique ID which was cancelled or corrupted before is active again
+     *
+     * @param projectUID unique ID of the project
+     * @throws RemoteException
+     */
+    @Asynchronous
+    public void projectStarted(ProjectUID projectUID) throws RemoteException;
+}
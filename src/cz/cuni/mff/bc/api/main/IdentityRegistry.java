@@ -0,0 +1,226 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package cz.cuni.mff.bc.api.main;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.WeakHashMap;
+
+/**
+ * Registry of canonical project and task IDs. Equal IDs are interned to one
+ * instance, so they can be compared by identity and their hash codes are
+ * computed only once. Each interned ID gets the compact numeric handle which
+ * can be used instead of the ID as the primitive map key or sent over the
+ * network to the party sharing the same registry. Project IDs are held weakly,
+ * so the project ID is dropped and its handle reused once nothing else uses
+ * it. Project IDs are interned under the lock of one of the segments, so
+ * concurrent deserialization of different projects doesn't contend. Task IDs
+ * have to be released once they are not used
+ *
+ * @author Jakub Hava
+ */
+public class IdentityRegistry {
+
+    private static final IdentityRegistry defaultRegistry = new IdentityRegistry();
+    private static final int SEGMENTS = 16;
+    private final ProjectSegment[] segments = new ProjectSegment[SEGMENTS];
+    private final Object projectHandlesLock = new Object();
+    private final ReferenceQueue<ProjectUID> collectedProjects = new ReferenceQueue<>();
+    private final ArrayList<ProjectReference> projectHandles = new ArrayList<>();
+    private final ArrayList<Integer> freeProjectHandles = new ArrayList<>();
+    private final HashMap<TaskID, TaskID> tasks = new HashMap<>();
+    private final ArrayList<TaskID> taskHandles = new ArrayList<>();
+    private final ArrayList<Integer> freeTaskHandles = new ArrayList<>();
+
+    /**
+     * Weak reference to the canonical project ID which remembers its handle
+     */
+    private static class ProjectReference extends WeakReference<ProjectUID> {
+
+        private final int handle;
+
+        ProjectReference(ProjectUID projectUID, int handle, ReferenceQueue<ProjectUID> queue) {
+            super(projectUID, queue);
+            this.handle = handle;
+        }
+    }
+
+    /**
+     * Part of the canonical project IDs guarded by its own lock
+     */
+    private static class ProjectSegment {
+
+        private final WeakHashMap<ProjectUID, ProjectReference> projects = new WeakHashMap<>();
+    }
+
+    /**
+     * Constructor. Handles are stored in the interned IDs, so only the default
+     * registry exists
+     */
+    private IdentityRegistry() {
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new ProjectSegment();
+        }
+    }
+
+    /**
+     * Gets the registry shared by the whole application
+     *
+     * @return default registry
+     */
+    public static IdentityRegistry getDefault() {
+        return defaultRegistry;
+    }
+
+    /**
+     * Gets the canonical instance of the project ID
+     *
+     * @param clientName client's name
+     * @param projectName project name
+     * @return canonical project ID
+     */
+    public ProjectUID getProjectUID(String clientName, String projectName) {
+        return intern(new ProjectUID(clientName, projectName));
+    }
+
+    /**
+     * Interns the project ID
+     *
+     * @param projectUID project ID
+     * @return canonical instance of the project ID
+     */
+    public ProjectUID intern(ProjectUID projectUID) {
+        ProjectSegment segment = segments[projectUID.hashCode() & (SEGMENTS - 1)];
+        synchronized (segment) {
+            ProjectReference reference = segment.projects.get(projectUID);
+            ProjectUID canonical = reference == null ? null : reference.get();
+            if (canonical == null) {
+                canonical = projectUID;
+                segment.projects.put(canonical, assignHandle(canonical));
+            }
+            return canonical;
+        }
+    }
+
+    private ProjectReference assignHandle(ProjectUID projectUID) {
+        synchronized (projectHandlesLock) {
+            ProjectReference collected;
+            while ((collected = (ProjectReference) collectedProjects.poll()) != null) {
+                if (projectHandles.get(collected.handle) == collected) {
+                    projectHandles.set(collected.handle, null);
+                    freeProjectHandles.add(collected.handle);
+                }
+            }
+            int handle;
+            if (freeProjectHandles.isEmpty()) {
+                handle = projectHandles.size();
+                projectHandles.add(null);
+            } else {
+                handle = freeProjectHandles.remove(freeProjectHandles.size() - 1);
+            }
+            ProjectReference reference = new ProjectReference(projectUID, handle, collectedProjects);
+            projectHandles.set(handle, reference);
+            projectUID.setHandle(handle);
+            return reference;
+        }
+    }
+
+    /**
+     * Interns the task ID. Interned task ID has to be released once it is not
+     * used
+     *
+     * @param taskID task ID
+     * @return canonical instance of the task ID
+     */
+    public synchronized TaskID intern(TaskID taskID) {
+        TaskID canonical = tasks.get(taskID);
+        if (canonical == null) {
+            canonical = taskID;
+            int handle;
+            if (freeTaskHandles.isEmpty()) {
+                handle = taskHandles.size();
+                taskHandles.add(canonical);
+            } else {
+                handle = freeTaskHandles.remove(freeTaskHandles.size() - 1);
+                taskHandles.set(handle, canonical);
+            }
+            canonical.setHandle(handle);
+            tasks.put(canonical, canonical);
+        }
+        return canonical;
+    }
+
+    /**
+     * Releases the task ID. Its handle can be assigned to another task ID
+     *
+     * @param taskID task ID
+     */
+    public synchronized void release(TaskID taskID) {
+        TaskID canonical = tasks.remove(taskID);
+        if (canonical != null) {
+            int handle = canonical.getHandle();
+            taskHandles.set(handle, null);
+            freeTaskHandles.add(handle);
+            canonical.setHandle(-1);
+        }
+    }
+
+    /**
+     * Gets the handle of the project ID
+     *
+     * @param projectUID project ID
+     * @return handle of the project ID
+     */
+    public int getHandle(ProjectUID projectUID) {
+        int handle = projectUID.getHandle();
+        return handle >= 0 ? handle : intern(projectUID).getHandle();
+    }
+
+    /**
+     * Gets the handle of the task ID. The task ID is interned if it hasn't
+     * been interned yet
+     *
+     * @param taskID task ID
+     * @return handle of the task ID
+     */
+    public int getHandle(TaskID taskID) {
+        int handle = taskID.getHandle();
+        return handle >= 0 ? handle : intern(taskID).getHandle();
+    }
+
+    /**
+     * Gets the project ID by its handle
+     *
+     * @param handle handle of the project ID
+     * @return project ID or null if no project ID has given handle
+     */
+    public ProjectUID getProjectUID(int handle) {
+        synchronized (projectHandlesLock) {
+            ProjectReference reference = handle >= 0 && handle < projectHandles.size() ? projectHandles.get(handle) : null;
+            return reference == null ? null : reference.get();
+        }
+    }
+
+    /**
+     * Gets the task ID by its handle
+     *
+     * @param handle handle of the task ID
+     * @return task ID or null if no task ID has given handle
+     */
+    public synchronized TaskID getTaskID(int handle) {
+        return handle >= 0 && handle < taskHandles.size() ? taskHandles.get(handle) : null;
+    }
+
+    /**
+     * Gets the number of interned task IDs
+     *
+     * @return number of interned task IDs
+     */
+    public synchronized int getTaskCount() {
+        return tasks.size();
+    }
+}
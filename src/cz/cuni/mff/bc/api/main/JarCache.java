@@ -0,0 +1,142 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package cz.cuni.mff.bc.api.main;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Local cache of project jars. Jars are stored under their SHA-256 hash, so the
+ * same jar is downloaded only once even if it is used by several projects or
+ * after the client restart. The least recently used jars are removed when the
+ * size of the cache exceeds the limit
+ *
+ * @author Jakub Hava
+ */
+public class JarCache {
+
+    private final Path cacheDir;
+    private final long maxBytes;
+    private final LinkedHashMap<String, Long> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long usedBytes = 0;
+
+    /**
+     * Constructor. Jars which are already present in the cache directory are
+     * loaded to the cache
+     *
+     * @param cacheDir directory where the jars are stored
+     * @param maxBytes maximal size of the cache in bytes
+     */
+    public JarCache(Path cacheDir, long maxBytes) {
+        this.cacheDir = cacheDir;
+        this.maxBytes = maxBytes;
+        File[] files = CustomIO.createFolder(cacheDir).listFiles();
+        if (files != null) {
+            Arrays.sort(files, new Comparator<File>() {
+                @Override
+                public int compare(File f1, File f2) {
+                    return Long.compare(f1.lastModified(), f2.lastModified());
+                }
+            });
+            for (File file : files) {
+                if (file.isFile() && CustomIO.getExtension(file).equals("jar")) {
+                    String name = file.getName();
+                    entries.put(name.substring(0, name.length() - ".jar".length()), file.length());
+                    usedBytes += file.length();
+                }
+            }
+        }
+    }
+
+    private Path getPath(String hash) {
+        return cacheDir.resolve(hash + ".jar");
+    }
+
+    /**
+     * Gets the cached jar with given hash. The jar is opened while the cache is
+     * locked, so it can't be evicted before it is read. The returned channel
+     * has to be closed by the caller
+     *
+     * @param hash SHA-256 hash of the jar
+     * @return channel for reading the cached jar or null if the jar is not in
+     * the cache
+     */
+    public synchronized FileChannel get(String hash) {
+        if (entries.get(hash) == null) {
+            return null;
+        }
+        Path path = getPath(hash);
+        try {
+            FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+            path.toFile().setLastModified(System.currentTimeMillis());
+            return channel;
+        } catch (IOException e) {
+            usedBytes -= entries.remove(hash);
+            return null;
+        }
+    }
+
+    /**
+     * Puts the jar to the cache. Jars larger than the size limit of the cache
+     * are not cached. The jar is hashed and copied before the cache is locked
+     *
+     * @param hash expected SHA-256 hash of the jar
+     * @param jar path to the jar
+     * @throws IOException
+     */
+    public void put(String hash, Path jar) throws IOException {
+        if (!CustomIO.getFileHash(jar).equals(hash)) {
+            throw new IOException("Hash of the jar " + jar + " does not match the expected hash");
+        }
+        if (Files.size(jar) > maxBytes) {
+            return;
+        }
+        Path tmp = Files.createTempFile(cacheDir, hash, ".tmp");
+        Files.copy(jar, tmp, StandardCopyOption.REPLACE_EXISTING);
+        store(hash, tmp);
+    }
+
+    private synchronized void store(String hash, Path tmp) throws IOException {
+        Path path = getPath(hash);
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        Long previous = entries.put(hash, path.toFile().length());
+        if (previous != null) {
+            usedBytes -= previous;
+        }
+        usedBytes += path.toFile().length();
+        evict(hash);
+    }
+
+    /**
+     * Gets the size of all cached jars
+     *
+     * @return size of all cached jars in bytes
+     */
+    public synchronized long getUsedBytes() {
+        return usedBytes;
+    }
+
+    private void evict(String keep) {
+        Iterator<Map.Entry<String, Long>> it = entries.entrySet().iterator();
+        while (usedBytes > maxBytes && it.hasNext()) {
+            Map.Entry<String, Long> entry = it.next();
+            if (!entry.getKey().equals(keep)) {
+                getPath(entry.getKey()).toFile().delete();
+                usedBytes -= entry.getValue();
+                it.remove();
+            }
+        }
+    }
+}
@@ -9,8 +9,6 @@ import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.net.URL;
-import java.net.URLClassLoader;
 import java.nio.file.Path;
 import java.util.Enumeration;
 import java.util.jar.Attributes;
@@ -40,15 +38,7 @@ public class JarTools {
         if (attributeFromManifest == null) {
             throw new IllegalArgumentException("Path to commander class has to be specified in the manifest file");
         } else {
-            URLClassLoader cl = new URLClassLoader(new URL[]{projectJar.toUri().toURL()});
-            try {
-                cl.loadClass(attributeFromManifest);
-                cl.close();
-                return true;
-            } catch (ClassNotFoundException e) {
-                throw new IllegalArgumentException("Commander class is not present in jar file");
-            }
-
+            return isClassPresent(projectJar, attributeFromManifest, "Commander class is not present in jar file");
         }
     }
 
@@ -66,15 +56,17 @@ public class JarTools {
         if (attributeFromManifest == null) {
             throw new IllegalArgumentException("Path to main computation class has to be specified in the manifest file");
         } else {
-            URLClassLoader cl = new URLClassLoader(new URL[]{projectJar.toUri().toURL()});
-            try {
-                cl.loadClass(attributeFromManifest);
-                cl.close();
+            return isClassPresent(projectJar, attributeFromManifest, "Computation class is not present in jar file");
+        }
+    }
+
+    private static boolean isClassPresent(Path projectJar, String className, String errorMessage) throws IllegalArgumentException, IOException {
+        try (JarFile jar = new JarFile(projectJar.toFile())) {
+            if (jar.getEntry(className.replace('.', '/') + ".class") != null) {
                 return true;
-            } catch (ClassNotFoundException e) {
-                throw new IllegalArgumentException("Computation class is not present in jar file");
+            } else {
+                throw new IllegalArgumentException(errorMessage);
             }
-
         }
     }
 
@@ -202,7 +194,8 @@ public class JarTools {
     }
 
     /**
-     * Checks the project parameters in project file
+     * Checks the project parameters in project file. The manifest is read only
+     * once and all parameters are validated at once
      *
      * @param projectJar project jar
      * @return true if the parameters are correct, false otherwise
@@ -210,8 +203,8 @@ public class JarTools {
      * @throws IOException
      */
     public static boolean checkProjectParams(Path projectJar) throws IllegalArgumentException, IOException {
-        return isProjectTimeValid(projectJar) && isProjectCoresValid(projectJar) && isProjectMemoryValid(projectJar)
-                && isProjectPriorityValid(projectJar) && isProjectTimeValid(projectJar) && isProjectCompClassValid(projectJar);
+        ProjectManifest manifest = ProjectManifest.read(projectJar);
+        return isClassPresent(projectJar, manifest.getCompClass(), "Computation class is not present in jar file");
     }
 
     /**
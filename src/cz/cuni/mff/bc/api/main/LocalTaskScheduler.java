@@ -0,0 +1,261 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package cz.cuni.mff.bc.api.main;
+
+import cz.cuni.mff.bc.api.enums.TaskState;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Calculates the tasks on the local machine within the cores and memory limits
+ * of the client. Task is admitted only if the cores and memory declared in its
+ * ID are free. Waiting tasks are packed to the free capacity from the largest
+ * ones, so tasks of different projects can run side by side without
+ * oversubscribing the machine. Task which has waited longer than the
+ * reservation delay reserves the capacity, no other task is admitted until the
+ * reserved task fits, so the large tasks are not starved by the small ones.
+ * Admitted tasks are placed to the slot chosen by their project, so the tasks
+ * of one project tend to run on the same threads, and the idle slots steal the
+ * tasks from the busy ones. Slot threads are daemon threads started with the
+ * first submitted task
+ *
+ * @author Jakub Hava
+ */
+public class LocalTaskScheduler {
+
+    private static final Comparator<Entry> LARGEST_FIRST = new Comparator<Entry>() {
+        @Override
+        public int compare(Entry e1, Entry e2) {
+            if (e1.cores != e2.cores) {
+                return Integer.compare(e2.cores, e1.cores);
+            }
+            return Integer.compare(e2.memory, e1.memory);
+        }
+    };
+    private static final long RESERVATION_DELAY = 5000;
+    private final int coresLimit;
+    private final int memoryLimit;
+    private int usedCores = 0;
+    private int usedMemory = 0;
+    private int waitingCores = 0;
+    private int waitingMemory = 0;
+    private final ArrayList<Entry> waiting = new ArrayList<>();
+    private final ArrayList<ArrayDeque<Entry>> slots = new ArrayList<>();
+    private final Thread[] workers;
+    private boolean shutdown = false;
+
+    private static class Entry {
+
+        private final FutureTask<Task> future;
+        private final int cores;
+        private final int memory;
+        private final int slot;
+        private final long submitted;
+
+        Entry(FutureTask<Task> future, int cores, int memory, int slot) {
+            this.future = future;
+            this.cores = cores;
+            this.memory = memory;
+            this.slot = slot;
+            this.submitted = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * Constructor. One slot is created for each core
+     *
+     * @param coresLimit number of cores which can be used by the tasks
+     * @param memoryLimit amount of memory in mb which can be used by the tasks
+     */
+    public LocalTaskScheduler(int coresLimit, int memoryLimit) {
+        if (coresLimit <= 0 || memoryLimit <= 0) {
+            throw new IllegalArgumentException("Cores and memory limits have to be higher then 0");
+        }
+        this.coresLimit = coresLimit;
+        this.memoryLimit = memoryLimit;
+        this.workers = new Thread[coresLimit];
+        for (int i = 0; i < coresLimit; i++) {
+            slots.add(new ArrayDeque<Entry>());
+        }
+    }
+
+    /**
+     * Submits the task for the calculation. The task is calculated once its
+     * declared cores and memory are free
+     *
+     * @param task task to be calculated
+     * @return future which returns the calculated task
+     */
+    public Future<Task> submit(final Task task) {
+        TaskID id = task.getUnicateID();
+        int cores = Math.max(1, id.getCores());
+        int memory = Math.max(0, id.getMemory());
+        if (cores > coresLimit || memory > memoryLimit) {
+            throw new IllegalArgumentException("Task " + id + " needs more cores or memory then the limits of the client");
+        }
+        FutureTask<Task> future = new FutureTask<>(new Callable<Task>() {
+            @Override
+            public Task call() throws Exception {
+                task.setState(TaskState.IN_PROGRESS);
+                task.calculate();
+                task.setState(TaskState.COMPLETE);
+                return task;
+            }
+        });
+        int slot = (id.getProjectUID().hashCode() & Integer.MAX_VALUE) % coresLimit;
+        synchronized (this) {
+            if (shutdown) {
+                throw new IllegalStateException("Task scheduler has been already shut down");
+            }
+            if (workers[0] == null) {
+                startWorkers();
+            }
+            waiting.add(new Entry(future, cores, memory, slot));
+            waitingCores += cores;
+            waitingMemory += memory;
+            admit();
+        }
+        return future;
+    }
+
+    /**
+     * Gets the number of cores which are not used or reserved by the tasks
+     *
+     * @return number of free cores
+     */
+    public synchronized int getFreeCores() {
+        return Math.max(0, coresLimit - usedCores - waitingCores);
+    }
+
+    /**
+     * Gets the amount of memory which is not used or reserved by the tasks
+     *
+     * @return amount of free memory in mb
+     */
+    public synchronized int getFreeMemory() {
+        return Math.max(0, memoryLimit - usedMemory - waitingMemory);
+    }
+
+    /**
+     * Gets the number of tasks with given requirements which can be admitted
+     * immediately. It should be used as the maximal number of tasks leased
+     * from the server
+     *
+     * @param cores number of cores needed by task
+     * @param memory amount of memory needed by task
+     * @return number of tasks which fit into the free capacity
+     */
+    public synchronized int getLeaseCapacity(int cores, int memory) {
+        int capacity = getFreeCores() / Math.max(1, cores);
+        if (memory > 0) {
+            capacity = Math.min(capacity, getFreeMemory() / memory);
+        }
+        return capacity;
+    }
+
+    /**
+     * Stops accepting new tasks. Submitted tasks are still calculated
+     */
+    public synchronized void shutdown() {
+        shutdown = true;
+        notifyAll();
+    }
+
+    private void startWorkers() {
+        for (int i = 0; i < coresLimit; i++) {
+            final int slot = i;
+            workers[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    work(slot);
+                }
+            }, "task-slot-" + i);
+            workers[i].setDaemon(true);
+            workers[i].start();
+        }
+    }
+
+    private void admit() {
+        long now = System.currentTimeMillis();
+        Entry reserved;
+        while ((reserved = getReserved(now)) != null) {
+            if (!fits(reserved)) {
+                notifyAll();
+                return;
+            }
+            waiting.remove(reserved);
+            start(reserved);
+        }
+        Collections.sort(waiting, LARGEST_FIRST);
+        for (Iterator<Entry> it = waiting.iterator(); it.hasNext();) {
+            Entry entry = it.next();
+            if (fits(entry)) {
+                it.remove();
+                start(entry);
+            }
+        }
+        notifyAll();
+    }
+
+    private Entry getReserved(long now) {
+        Entry reserved = null;
+        for (Entry entry : waiting) {
+            if (now - entry.submitted >= RESERVATION_DELAY && (reserved == null || entry.submitted < reserved.submitted)) {
+                reserved = entry;
+            }
+        }
+        return reserved;
+    }
+
+    private boolean fits(Entry entry) {
+        return usedCores + entry.cores <= coresLimit && usedMemory + entry.memory <= memoryLimit;
+    }
+
+    private void start(Entry entry) {
+        waitingCores -= entry.cores;
+        waitingMemory -= entry.memory;
+        usedCores += entry.cores;
+        usedMemory += entry.memory;
+        slots.get(entry.slot).addLast(entry);
+    }
+
+    private Entry poll(int slot) {
+        Entry entry = slots.get(slot).pollFirst();
+        for (int i = 1; entry == null && i < coresLimit; i++) {
+            entry = slots.get((slot + i) % coresLimit).pollLast();
+        }
+        return entry;
+    }
+
+    private void work(int slot) {
+        while (true) {
+            Entry entry;
+            synchronized (this) {
+                while ((entry = poll(slot)) == null) {
+                    if (shutdown && waiting.isEmpty() && usedCores == 0) {
+                        return;
+                    }
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+            }
+            entry.future.run();
+            synchronized (this) {
+                usedCores -= entry.cores;
+                usedMemory -= entry.memory;
+                admit();
+            }
+        }
+    }
+}
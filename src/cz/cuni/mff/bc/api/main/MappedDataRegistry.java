@@ -0,0 +1,82 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package cz.cuni.mff.bc.api.main;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.HashMap;
+
+/**
+ * Registry of memory mapped task data files used by the worker. Each file is
+ * mapped only once and the mapping is shared by all tasks reading it. The
+ * mappings are reference counted and dropped once no task uses them, the
+ * mapped memory is then released by the garbage collector. Tasks acquire the
+ * mapping by Task.loadData(MappedDataRegistry, Path) and release it by
+ * Task.releaseData, the pipelined task runner releases it once the task leaves
+ * the pipeline
+ *
+ * @author Jakub Hava
+ */
+public class MappedDataRegistry {
+
+    private final HashMap<Path, Entry> entries = new HashMap<>();
+
+    private static class Entry {
+
+        private final MappedTaskData data;
+        private final long lastModified;
+        private int references = 0;
+
+        Entry(MappedTaskData data, long lastModified) {
+            this.data = data;
+            this.lastModified = lastModified;
+        }
+    }
+
+    /**
+     * Gets the mapping of the data file and increases the number of tasks
+     * using it. Every call of this method has to be followed by the call of
+     * release method once the task is finished
+     *
+     * @param path path to the data file
+     * @return memory mapped data file
+     * @throws IOException
+     */
+    public synchronized MappedTaskData acquire(Path path) throws IOException {
+        Path key = path.toAbsolutePath().normalize();
+        long lastModified = key.toFile().lastModified();
+        Entry entry = entries.get(key);
+        if (entry == null || entry.lastModified != lastModified) {
+            entry = new Entry(new MappedTaskData(key), lastModified);
+            entries.put(key, entry);
+        }
+        entry.references++;
+        return entry.data;
+    }
+
+    /**
+     * Decreases the number of tasks using the mapping
+     *
+     * @param data mapping returned by the acquire method
+     */
+    public synchronized void release(MappedTaskData data) {
+        Entry entry = entries.get(data.getPath());
+        if (entry != null && entry.data == data) {
+            entry.references--;
+            if (entry.references <= 0) {
+                entries.remove(data.getPath());
+            }
+        }
+    }
+
+    /**
+     * Gets the number of currently mapped files
+     *
+     * @return number of mapped files
+     */
+    public synchronized int getMappedCount() {
+        return entries.size();
+    }
+}
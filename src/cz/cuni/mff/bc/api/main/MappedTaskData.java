@@ -0,0 +1,141 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package cz.cuni.mff.bc.api.main;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Read-only memory mapping of the task data file. Files larger than one
+ * segment are mapped as several segments, so files over 2 GB can be mapped as
+ * well. The mapped pages are shared through the page cache by all tasks
+ * reading the same file, so the data are not copied to the heap of each task.
+ * Instances are obtained from the MappedDataRegistry, which manages their
+ * lifetime
+ *
+ * @author Jakub Hava
+ */
+public class MappedTaskData {
+
+    /**
+     * Size of one mapped segment in bytes
+     */
+    public static final long SEGMENT_SIZE = 1L << 30;
+    private static final long SEGMENT_MASK = SEGMENT_SIZE - 1;
+    private final Path path;
+    private final long size;
+    private final MappedByteBuffer[] segments;
+
+    /**
+     * Constructor
+     *
+     * @param path path to the data file
+     * @throws IOException
+     */
+    MappedTaskData(Path path) throws IOException {
+        this.path = path;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            this.size = channel.size();
+            int count = (int) ((size + SEGMENT_SIZE - 1) / SEGMENT_SIZE);
+            this.segments = new MappedByteBuffer[count];
+            for (int i = 0; i < count; i++) {
+                long position = i * SEGMENT_SIZE;
+                segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(SEGMENT_SIZE, size - position));
+            }
+        }
+    }
+
+    /**
+     * Gets the path to the mapped file
+     *
+     * @return path to the mapped file
+     */
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * Gets the size of the mapped file
+     *
+     * @return size of the file in bytes
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * Gets the number of mapped segments
+     *
+     * @return number of segments
+     */
+    public int getSegmentCount() {
+        return segments.length;
+    }
+
+    /**
+     * Gets the mapped segment. The returned buffer has its own position and
+     * limit, so it can be used by one thread without affecting other tasks
+     *
+     * @param index index of the segment
+     * @return read-only buffer with the segment
+     */
+    public ByteBuffer getSegment(int index) {
+        return segments[index].duplicate();
+    }
+
+    /**
+     * Gets the whole file as one buffer
+     *
+     * @return read-only buffer with the whole file
+     * @throws IllegalStateException if the file is mapped as several segments
+     */
+    public ByteBuffer asBuffer() {
+        if (segments.length > 1) {
+            throw new IllegalStateException("File " + path + " is too large to be accessed as one buffer");
+        }
+        return segments.length == 0 ? ByteBuffer.allocate(0).asReadOnlyBuffer() : getSegment(0);
+    }
+
+    /**
+     * Gets the byte at given position of the file
+     *
+     * @param position position in the file
+     * @return byte at the position
+     */
+    public byte get(long position) {
+        if (position < 0 || position >= size) {
+            throw new IndexOutOfBoundsException("Position " + position + " is out of the file " + path);
+        }
+        return segments[(int) (position / SEGMENT_SIZE)].get((int) (position & SEGMENT_MASK));
+    }
+
+    /**
+     * Copies the bytes from given position of the file to the array. The copied
+     * range can cross the segment boundary
+     *
+     * @param position position in the file
+     * @param dst destination array
+     * @param offset offset in the destination array
+     * @param length number of bytes to copy
+     */
+    public void get(long position, byte[] dst, int offset, int length) {
+        if (position < 0 || length < 0 || position + length > size) {
+            throw new IndexOutOfBoundsException("Range " + position + "+" + length + " is out of the file " + path);
+        }
+        while (length > 0) {
+            ByteBuffer segment = getSegment((int) (position / SEGMENT_SIZE));
+            segment.position((int) (position & SEGMENT_MASK));
+            int n = Math.min(length, segment.remaining());
+            segment.get(dst, offset, n);
+            position += n;
+            offset += n;
+            length -= n;
+        }
+    }
+}
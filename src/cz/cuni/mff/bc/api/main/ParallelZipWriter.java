@@ -0,0 +1,394 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package cz.cuni.mff.bc.api.main;
+
+import cz.cuni.mff.bc.api.network.CountingOutputStream;
+import java.io.BufferedOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Writes zip files with entries compressed concurrently. The entry is split
+ * into blocks which are compressed by all cores, each block is primed with the
+ * last 32 KB of the previous block and ended by the sync flush, so the
+ * compressed blocks form one deflate stream. Blocks are written to the zip
+ * file in the original order as soon as they are compressed and the checksum
+ * and sizes follow in the data descriptor. Entries which are already
+ * compressed, detected by the file extension or by compressing the sample of
+ * the file, are stored without compression. ZIP64 records are written when
+ * needed
+ *
+ * @author Jakub Hava
+ */
+class ParallelZipWriter {
+
+    private static final List<String> COMPRESSED_EXTENSIONS = Arrays.asList(
+            "gz", "tgz", "bz2", "xz", "7z", "rar", "png", "jpg", "jpeg", "gif", "mp3", "mp4", "avi", "mkv");
+    private static final int SAMPLE_SIZE = 65536;
+    private static final double MIN_SAMPLE_RATIO = 0.95;
+    private static final int BLOCK_SIZE = 131072;
+    private static final int DICTIONARY_SIZE = 32768;
+    private static final long ZIP64_LIMIT = 0xFFFFFFFFL;
+    private static final int STORED = 0;
+    private static final int DEFLATED = 8;
+    private static final int FLAG_UTF8 = 0x0800;
+    private static final int FLAG_DESCRIPTOR = 0x0008;
+    private final int level;
+
+    /**
+     * Entry written to the zip file
+     */
+    private static class PreparedEntry {
+
+        private String name;
+        private int method;
+        private int flags;
+        private long crc;
+        private long size;
+        private long compressedSize;
+        private long time;
+        private long offset;
+    }
+
+    /**
+     * Compresses one block of the entry
+     */
+    private class DeflateBlock implements Callable<byte[]> {
+
+        private final byte[] block;
+        private final byte[] dictionary;
+        private final boolean last;
+
+        DeflateBlock(byte[] block, byte[] dictionary, boolean last) {
+            this.block = block;
+            this.dictionary = dictionary;
+            this.last = last;
+        }
+
+        @Override
+        public byte[] call() {
+            Deflater deflater = new Deflater(level, true);
+            try {
+                if (dictionary != null) {
+                    deflater.setDictionary(dictionary);
+                }
+                deflater.setInput(block);
+                if (last) {
+                    deflater.finish();
+                }
+                byte[] out = new byte[block.length + (block.length >>> 3) + 64];
+                int length = 0;
+                while (true) {
+                    if (length == out.length) {
+                        out = Arrays.copyOf(out, out.length * 2);
+                    }
+                    int space = out.length - length;
+                    int n = last ? deflater.deflate(out, length, space) : deflater.deflate(out, length, space, Deflater.SYNC_FLUSH);
+                    length += n;
+                    if (last ? deflater.finished() : n < space) {
+                        return Arrays.copyOf(out, length);
+                    }
+                }
+            } finally {
+                deflater.end();
+            }
+        }
+    }
+
+    /**
+     * Constructor
+     *
+     * @param level compression level from 0 to 9 or -1 for default level
+     */
+    ParallelZipWriter(int level) {
+        if (level < Deflater.DEFAULT_COMPRESSION || level > Deflater.BEST_COMPRESSION) {
+            throw new IllegalArgumentException("Compression level has to be integer in range from -1 to 9");
+        }
+        this.level = level;
+    }
+
+    /**
+     * Zips the files to the zip file
+     *
+     * @param zip destination zip file
+     * @param files files to be zipped
+     * @throws IOException
+     */
+    void write(File zip, File[] files) throws IOException {
+        int threads = Runtime.getRuntime().availableProcessors();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try (CountingOutputStream out = new CountingOutputStream(new BufferedOutputStream(new FileOutputStream(zip), 65536))) {
+            ArrayList<PreparedEntry> entries = new ArrayList<>();
+            for (File file : files) {
+                PreparedEntry entry = new PreparedEntry();
+                entry.name = file.getName();
+                entry.size = file.length();
+                entry.time = file.lastModified();
+                entry.offset = out.getCount();
+                if (isCompressible(file)) {
+                    writeDeflated(file, entry, out, executor, threads * 2);
+                } else {
+                    writeStored(file, entry, out);
+                }
+                entries.add(entry);
+            }
+            writeCentralDirectory(out, entries);
+        } catch (ExecutionException e) {
+            throw new IOException("Problem with compressing files to " + zip.getName(), e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Compressing files to " + zip.getName() + " has been interrupted", e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void writeStored(File file, PreparedEntry entry, OutputStream out) throws IOException {
+        entry.method = STORED;
+        entry.flags = FLAG_UTF8;
+        CRC32 crc = new CRC32();
+        byte[] buffer = new byte[65536];
+        int n;
+        try (InputStream in = new FileInputStream(file)) {
+            while ((n = in.read(buffer)) > 0) {
+                crc.update(buffer, 0, n);
+            }
+        }
+        entry.crc = crc.getValue();
+        entry.compressedSize = entry.size;
+        writeLocalHeader(out, entry);
+        try (InputStream in = new FileInputStream(file)) {
+            long remaining = entry.size;
+            while (remaining > 0 && (n = in.read(buffer, 0, (int) Math.min(buffer.length, remaining))) > 0) {
+                out.write(buffer, 0, n);
+                remaining -= n;
+            }
+            if (remaining > 0) {
+                throw new EOFException("File " + file.getName() + " has been shortened while zipping");
+            }
+        }
+    }
+
+    private void writeDeflated(File file, PreparedEntry entry, OutputStream out, ExecutorService executor, int window) throws IOException, InterruptedException, ExecutionException {
+        entry.method = DEFLATED;
+        entry.flags = FLAG_UTF8 | FLAG_DESCRIPTOR;
+        writeLocalHeader(out, entry);
+        CRC32 crc = new CRC32();
+        ArrayDeque<Future<byte[]>> pending = new ArrayDeque<>();
+        long compressed = 0;
+        try (InputStream in = new FileInputStream(file)) {
+            long remaining = entry.size;
+            byte[] previous = null;
+            do {
+                byte[] block = new byte[(int) Math.min(BLOCK_SIZE, remaining)];
+                readFully(in, block, file);
+                remaining -= block.length;
+                crc.update(block, 0, block.length);
+                byte[] dictionary = previous == null ? null
+                        : Arrays.copyOfRange(previous, Math.max(0, previous.length - DICTIONARY_SIZE), previous.length);
+                pending.add(executor.submit(new DeflateBlock(block, dictionary, remaining == 0)));
+                if (pending.size() >= window) {
+                    byte[] data = pending.poll().get();
+                    out.write(data);
+                    compressed += data.length;
+                }
+                previous = block;
+            } while (remaining > 0);
+        }
+        while (!pending.isEmpty()) {
+            byte[] data = pending.poll().get();
+            out.write(data);
+            compressed += data.length;
+        }
+        entry.crc = crc.getValue();
+        entry.compressedSize = compressed;
+        writeDataDescriptor(out, entry);
+    }
+
+    private static void readFully(InputStream in, byte[] block, File file) throws IOException {
+        int length = 0;
+        int n;
+        while (length < block.length && (n = in.read(block, length, block.length - length)) > 0) {
+            length += n;
+        }
+        if (length < block.length) {
+            throw new EOFException("File " + file.getName() + " has been shortened while zipping");
+        }
+    }
+
+    private boolean isCompressible(File file) throws IOException {
+        if (level == Deflater.NO_COMPRESSION || COMPRESSED_EXTENSIONS.contains(CustomIO.getExtension(file).toLowerCase())) {
+            return false;
+        }
+        byte[] sample = new byte[SAMPLE_SIZE];
+        int length = 0;
+        try (InputStream in = new FileInputStream(file)) {
+            int n;
+            while (length < sample.length && (n = in.read(sample, length, sample.length - length)) > 0) {
+                length += n;
+            }
+        }
+        if (length == 0) {
+            return false;
+        }
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED, true);
+        try {
+            deflater.setInput(sample, 0, length);
+            deflater.finish();
+            byte[] out = new byte[SAMPLE_SIZE];
+            long compressed = 0;
+            while (!deflater.finished()) {
+                compressed += deflater.deflate(out);
+            }
+            return compressed < length * MIN_SAMPLE_RATIO;
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private void writeLocalHeader(OutputStream out, PreparedEntry entry) throws IOException {
+        byte[] name = entry.name.getBytes(StandardCharsets.UTF_8);
+        boolean zip64 = entry.size >= ZIP64_LIMIT || entry.compressedSize >= ZIP64_LIMIT;
+        boolean descriptor = (entry.flags & FLAG_DESCRIPTOR) != 0;
+        writeInt(out, 0x04034b50L);
+        writeShort(out, zip64 ? 45 : 20);
+        writeShort(out, entry.flags);
+        writeShort(out, entry.method);
+        writeInt(out, toDosTime(entry.time));
+        writeInt(out, descriptor ? 0 : entry.crc);
+        writeInt(out, zip64 ? ZIP64_LIMIT : descriptor ? 0 : entry.compressedSize);
+        writeInt(out, zip64 ? ZIP64_LIMIT : descriptor ? 0 : entry.size);
+        writeShort(out, name.length);
+        writeShort(out, zip64 ? 20 : 0);
+        out.write(name);
+        if (zip64) {
+            // sizes of the entry with the data descriptor follow the data
+            writeShort(out, 0x0001);
+            writeShort(out, 16);
+            writeLong(out, descriptor ? 0 : entry.size);
+            writeLong(out, descriptor ? 0 : entry.compressedSize);
+        }
+    }
+
+    private void writeDataDescriptor(OutputStream out, PreparedEntry entry) throws IOException {
+        writeInt(out, 0x08074b50L);
+        writeInt(out, entry.crc);
+        if (entry.size >= ZIP64_LIMIT || entry.compressedSize >= ZIP64_LIMIT) {
+            writeLong(out, entry.compressedSize);
+            writeLong(out, entry.size);
+        } else {
+            writeInt(out, entry.compressedSize);
+            writeInt(out, entry.size);
+        }
+    }
+
+    private void writeCentralDirectory(CountingOutputStream out, List<PreparedEntry> entries) throws IOException {
+        long start = out.getCount();
+        for (PreparedEntry entry : entries) {
+            byte[] name = entry.name.getBytes(StandardCharsets.UTF_8);
+            boolean sizeZip64 = entry.size >= ZIP64_LIMIT || entry.compressedSize >= ZIP64_LIMIT;
+            boolean offsetZip64 = entry.offset >= ZIP64_LIMIT;
+            int extraLength = (sizeZip64 ? 16 : 0) + (offsetZip64 ? 8 : 0);
+            writeInt(out, 0x02014b50L);
+            writeShort(out, extraLength > 0 ? 45 : 20);
+            writeShort(out, extraLength > 0 ? 45 : 20);
+            writeShort(out, entry.flags);
+            writeShort(out, entry.method);
+            writeInt(out, toDosTime(entry.time));
+            writeInt(out, entry.crc);
+            writeInt(out, sizeZip64 ? ZIP64_LIMIT : entry.compressedSize);
+            writeInt(out, sizeZip64 ? ZIP64_LIMIT : entry.size);
+            writeShort(out, name.length);
+            writeShort(out, extraLength > 0 ? extraLength + 4 : 0);
+            writeShort(out, 0);
+            writeShort(out, 0);
+            writeShort(out, 0);
+            writeInt(out, 0);
+            writeInt(out, offsetZip64 ? ZIP64_LIMIT : entry.offset);
+            out.write(name);
+            if (extraLength > 0) {
+                writeShort(out, 0x0001);
+                writeShort(out, extraLength);
+                if (sizeZip64) {
+                    writeLong(out, entry.size);
+                    writeLong(out, entry.compressedSize);
+                }
+                if (offsetZip64) {
+                    writeLong(out, entry.offset);
+                }
+            }
+        }
+        long end = out.getCount();
+        long size = end - start;
+        if (entries.size() >= 0xFFFF || start >= ZIP64_LIMIT || size >= ZIP64_LIMIT) {
+            writeInt(out, 0x06064b50L);
+            writeLong(out, 44);
+            writeShort(out, 45);
+            writeShort(out, 45);
+            writeInt(out, 0);
+            writeInt(out, 0);
+            writeLong(out, entries.size());
+            writeLong(out, entries.size());
+            writeLong(out, size);
+            writeLong(out, start);
+            writeInt(out, 0x07064b50L);
+            writeInt(out, 0);
+            writeLong(out, end);
+            writeInt(out, 1);
+        }
+        writeInt(out, 0x06054b50L);
+        writeShort(out, 0);
+        writeShort(out, 0);
+        writeShort(out, Math.min(entries.size(), 0xFFFF));
+        writeShort(out, Math.min(entries.size(), 0xFFFF));
+        writeInt(out, Math.min(size, ZIP64_LIMIT));
+        writeInt(out, Math.min(start, ZIP64_LIMIT));
+        writeShort(out, 0);
+    }
+
+    private static long toDosTime(long time) {
+        Calendar c = Calendar.getInstance();
+        c.setTimeInMillis(time);
+        int year = c.get(Calendar.YEAR);
+        if (year < 1980) {
+            return (1 << 21) | (1 << 16);
+        }
+        return (year - 1980) << 25 | (c.get(Calendar.MONTH) + 1) << 21 | c.get(Calendar.DAY_OF_MONTH) << 16
+                | c.get(Calendar.HOUR_OF_DAY) << 11 | c.get(Calendar.MINUTE) << 5 | c.get(Calendar.SECOND) >> 1;
+    }
+
+    private static void writeShort(OutputStream out, int v) throws IOException {
+        out.write(v & 0xff);
+        out.write((v >>> 8) & 0xff);
+    }
+
+    private static void writeInt(OutputStream out, long v) throws IOException {
+        writeShort(out, (int) (v & 0xffff));
+        writeShort(out, (int) ((v >>> 16) & 0xffff));
+    }
+
+    private static void writeLong(OutputStream out, long v) throws IOException {
+        writeInt(out, v & 0xffffffffL);
+        writeInt(out, v >>> 32);
+    }
+}
@@ -0,0 +1,346 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package cz.cuni.mff.bc.api.main;
+
+import cz.cuni.mff.bc.api.enums.InformMessage;
+import cz.cuni.mff.bc.api.enums.TaskState;
+import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Runs the tasks in the pipeline of three stages. The fetching stage gets the
+ * tasks from the server and prepares them, the calculation stage calculates
+ * them and the finishing stage finishes them and passes them to the task
+ * submitter. Up to the prefetch depth of tasks are prepared while the current
+ * task is being calculated and the finished tasks are uploaded while the next
+ * task is being calculated. Tasks which fail in any stage and tasks which are
+ * left in the pipeline when the runner is interrupted are returned back to the
+ * server. When the local task scheduler is set, tasks are calculated by it and
+ * no more tasks are leased than the scheduler can admit. Class loader and
+ * mapped data acquired by the task during the preparation are released once
+ * the task leaves the pipeline
+ *
+ * @author Jakub Hava
+ */
+public class PipelinedTaskRunner implements Runnable {
+
+    private static final Logger LOG = Logger.getLogger(PipelinedTaskRunner.class.getName());
+    private static final long IDLE_INTERVAL = 1000;
+    private static final Task END = new Task();
+    private final IServer remoteService;
+    private final String clientName;
+    private final TaskHandler handler;
+    private final TaskSubmitter submitter;
+    private final BlockingQueue<Task> prepared;
+    private final BlockingQueue<Task> calculated;
+    private final ArrayList<TaskID> failed = new ArrayList<>();
+    private TaskCancellationTracker cancellationTracker;
+    private LocalTaskScheduler scheduler;
+    private int leaseCores = 1;
+    private int leaseMemory = 0;
+    private volatile boolean closed = false;
+    private volatile boolean finished = false;
+
+    /**
+     * Constructor
+     *
+     * @param remoteService remote interface
+     * @param clientName client's name
+     * @param handler handler which prepares and finishes the tasks
+     * @param submitter submitter which sends the completed tasks to the server
+     * @param prefetchDepth number of tasks prepared in advance
+     */
+    public PipelinedTaskRunner(IServer remoteService, String clientName, TaskHandler handler, TaskSubmitter submitter, int prefetchDepth) {
+        if (prefetchDepth <= 0) {
+            throw new IllegalArgumentException("Prefetch depth has to be integer higher then 0");
+        }
+        this.remoteService = remoteService;
+        this.clientName = clientName;
+        this.handler = handler;
+        this.submitter = submitter;
+        this.prepared = new ArrayBlockingQueue<>(prefetchDepth);
+        this.calculated = new ArrayBlockingQueue<>(prefetchDepth);
+    }
+
+    /**
+     * Sets the tracker of obsolete tasks. Prepared tasks which became obsolete
+     * are not calculated
+     *
+     * @param cancellationTracker tracker of obsolete tasks, can be null
+     */
+    public synchronized void setCancellationTracker(TaskCancellationTracker cancellationTracker) {
+        this.cancellationTracker = cancellationTracker;
+    }
+
+    /**
+     * Sets the local task scheduler. Tasks are calculated by the scheduler and
+     * the number of leased tasks is limited by its free capacity
+     *
+     * @param scheduler local task scheduler, can be null
+     */
+    public synchronized void setScheduler(LocalTaskScheduler scheduler) {
+        this.scheduler = scheduler;
+    }
+
+    private synchronized LocalTaskScheduler getScheduler() {
+        return scheduler;
+    }
+
+    /**
+     * Gets the IDs of tasks which failed and have been returned to the server
+     *
+     * @return list of failed tasks
+     */
+    public synchronized ArrayList<TaskID> getFailedTasks() {
+        return new ArrayList<>(failed);
+    }
+
+    /**
+     * Stops fetching new tasks. Tasks which have been already fetched are
+     * still calculated and submitted
+     */
+    public void close() {
+        closed = true;
+    }
+
+    /**
+     * Checks if all fetched tasks have been submitted and the runner has been
+     * closed
+     *
+     * @return true if the runner has finished, false otherwise
+     */
+    public boolean hasFinished() {
+        return finished;
+    }
+
+    @Override
+    public void run() {
+        Thread calculation = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                calculate();
+            }
+        }, "task-calculation");
+        Thread finishing = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                finish();
+            }
+        }, "task-finishing");
+        calculation.start();
+        finishing.start();
+        try {
+            remoteService.sendInformMessage(clientName, InformMessage.CALCULATION_STARTED);
+        } catch (RemoteException e) {
+            LOG.log(Level.FINE, "Server couldn''t be informed about the start of calculation: {0}", e.getMessage());
+        }
+        boolean interrupted = false;
+        try {
+            fetch();
+            prepared.put(END);
+            calculation.join();
+            finishing.join();
+        } catch (InterruptedException e) {
+            interrupted = true;
+            calculation.interrupt();
+            finishing.interrupt();
+            joinUninterruptibly(calculation);
+            joinUninterruptibly(finishing);
+        } finally {
+            failLeftovers(prepared);
+            failLeftovers(calculated);
+            try {
+                remoteService.sendInformMessage(clientName, InformMessage.CALCULATION_ENDED);
+            } catch (RemoteException e) {
+                LOG.log(Level.FINE, "Server couldn''t be informed about the end of calculation: {0}", e.getMessage());
+            }
+            finished = true;
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void fetch() throws InterruptedException {
+        while (!closed) {
+            ArrayList<Task> tasks = null;
+            try {
+                ProjectUID projectUID = remoteService.getProjectIdBeforeCalculation(clientName);
+                int maxTasks = getLeaseCount();
+                if (projectUID != null && maxTasks > 0) {
+                    tasks = remoteService.getTasks(clientName, projectUID, maxTasks);
+                }
+            } catch (RemoteException e) {
+                LOG.log(Level.FINE, "Tasks couldn''t be fetched from the server: {0}", e.getMessage());
+            }
+            if (tasks == null || tasks.isEmpty()) {
+                Thread.sleep(IDLE_INTERVAL);
+                continue;
+            }
+            for (int i = 0; i < tasks.size(); i++) {
+                Task task = tasks.get(i);
+                leaseCores = Math.max(1, task.getUnicateID().getCores());
+                leaseMemory = Math.max(0, task.getUnicateID().getMemory());
+                try {
+                    handler.prepare(task);
+                } catch (Exception e) {
+                    fail(task);
+                    continue;
+                }
+                try {
+                    prepared.put(task);
+                } catch (InterruptedException e) {
+                    for (int j = i; j < tasks.size(); j++) {
+                        fail(tasks.get(j));
+                    }
+                    throw e;
+                }
+            }
+        }
+    }
+
+    private void calculate() {
+        Task task = null;
+        boolean ended = false;
+        try {
+            while ((task = prepared.take()) != END) {
+                if (isObsolete(task)) {
+                    release(task);
+                    continue;
+                }
+                try {
+                    calculate(task);
+                } catch (InterruptedException e) {
+                    throw e;
+                } catch (Throwable e) {
+                    Throwable cause = e instanceof ExecutionException ? e.getCause() : e;
+                    // errors of the project classes must not stop the pipeline
+                    LOG.log(Level.WARNING, "Calculation of task {0} failed: {1}", new Object[]{task.getUnicateID(), cause});
+                    fail(task);
+                    continue;
+                }
+                calculated.put(task);
+            }
+            task = null;
+            calculated.put(END);
+            ended = true;
+        } catch (InterruptedException e) {
+            if (task != null && task != END) {
+                fail(task);
+            }
+        } finally {
+            if (!ended) {
+                // make room for the end mark, so the finishing stage always ends
+                while (!calculated.offer(END)) {
+                    Task left = calculated.poll();
+                    if (left != null && left != END) {
+                        fail(left);
+                    }
+                }
+            }
+        }
+    }
+
+    private void calculate(Task task) throws Exception {
+        LocalTaskScheduler taskScheduler = getScheduler();
+        if (taskScheduler == null) {
+            task.setState(TaskState.IN_PROGRESS);
+            task.calculate();
+            task.setState(TaskState.COMPLETE);
+            return;
+        }
+        Future<Task> future = taskScheduler.submit(task);
+        try {
+            future.get();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            throw e;
+        }
+    }
+
+    private int getLeaseCount() {
+        int count = Math.max(1, prepared.remainingCapacity());
+        LocalTaskScheduler taskScheduler = getScheduler();
+        if (taskScheduler != null) {
+            count = Math.min(count, taskScheduler.getLeaseCapacity(leaseCores, leaseMemory));
+        }
+        return count;
+    }
+
+    private void finish() {
+        Task task;
+        try {
+            while ((task = calculated.take()) != END) {
+                try {
+                    handler.finish(task);
+                    release(task);
+                    submitter.submit(task);
+                } catch (InterruptedException e) {
+                    fail(task);
+                    return;
+                } catch (Throwable e) {
+                    LOG.log(Level.WARNING, "Finishing of task {0} failed: {1}", new Object[]{task.getUnicateID(), e});
+                    fail(task);
+                }
+            }
+        } catch (InterruptedException e) {
+        }
+    }
+
+    private void failLeftovers(BlockingQueue<Task> queue) {
+        Task task;
+        while ((task = queue.poll()) != null) {
+            if (task != END) {
+                fail(task);
+            }
+        }
+    }
+
+    private static void joinUninterruptibly(Thread thread) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                thread.join();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private synchronized boolean isObsolete(Task task) {
+        if (cancellationTracker != null && cancellationTracker.isObsolete(task.getUnicateID())) {
+            cancellationTracker.forget(task.getUnicateID());
+            return true;
+        }
+        return false;
+    }
+
+    private static void release(Task task) {
+        task.releaseData();
+        task.releaseClass();
+    }
+
+    private void fail(Task task) {
+        release(task);
+        synchronized (this) {
+            failed.add(task.getUnicateID());
+        }
+        try {
+            remoteService.cancelTaskOnClient(clientName, task.getUnicateID());
+        } catch (RemoteException e) {
+            LOG.log(Level.FINE, "Task {0} couldn''t be returned to the server: {1}", new Object[]{task.getUnicateID(), e.getMessage()});
+        }
+    }
+}
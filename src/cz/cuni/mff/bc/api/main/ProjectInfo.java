@@ -23,6 +23,8 @@ public class ProjectInfo implements Serializable {
     private final int cores;
     private final int memory;
     private final int time;
+    private final int cacheHits;
+    private final int cacheMisses;
 
     /**
      * Constructor
@@ -39,6 +41,30 @@ public class ProjectInfo implements Serializable {
      */
     public ProjectInfo(String projectName, String clientName, int numOfCompletedTasks, int numOfAllTasks,
             ProjectState state, int priority, int cores, int memory, int time) {
+        this(projectName, clientName, numOfCompletedTasks, numOfAllTasks, state, priority, cores, memory, time, 0, 0);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param projectName project name
+     * @param clientName client's name
+     * @param numOfCompletedTasks number of completed tasks
+     * @param numOfAllTasks number of all tasks
+     * @param state project state
+     * @param priority project priority
+     * @param cores number of cores needed by task
+     * @param memory amount of memory needed by task
+     * @param time average time of task to be calculated
+     * @param cacheHits number of tasks whose result has been taken from the
+     * result cache
+     * @param cacheMisses number of tasks whose result hasn't been found in the
+     * result cache
+     */
+    public ProjectInfo(String projectName, String clientName, int numOfCompletedTasks, int numOfAllTasks,
+            ProjectState state, int priority, int cores, int memory, int time, int cacheHits, int cacheMisses) {
+        this.cacheHits = cacheHits;
+        this.cacheMisses = cacheMisses;
         this.projectName = projectName;
         this.clientName = clientName;
         this.numOfCompletedTasks = numOfCompletedTasks;
@@ -131,8 +157,34 @@ public class ProjectInfo implements Serializable {
         return priority;
     }
 
+    /**
+     * Gets the number of tasks whose result has been taken from the result
+     * cache. It is filled by the server from ResultCache.getHits, so it is 0
+     * if the server doesn't use the result cache
+     *
+     * @return number of cache hits
+     */
+    public int getCacheHits() {
+        return cacheHits;
+    }
+
+    /**
+     * Gets the number of tasks whose result hasn't been found in the result
+     * cache. It is filled by the server from ResultCache.getMisses, so it is 0
+     * if the server doesn't use the result cache
+     *
+     * @return number of cache misses
+     */
+    public int getCacheMisses() {
+        return cacheMisses;
+    }
+
     @Override
     public String toString() {
-        return "ProjectID: " + projectName + "; State: " + state + "; Priority " + priority + "; Num of completed tasks: " + numOfCompletedTasks + "/" + numOfAllTasks;
+        String info = "ProjectID: " + projectName + "; State: " + state + "; Priority " + priority + "; Num of completed tasks: " + numOfCompletedTasks + "/" + numOfAllTasks;
+        if (cacheHits + cacheMisses > 0) {
+            info += "; Cached results: " + cacheHits + "/" + (cacheHits + cacheMisses);
+        }
+        return info;
     }
 }
@@ -0,0 +1,170 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package cz.cuni.mff.bc.api.main;
+
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.jar.Attributes;
+import java.util.jar.JarInputStream;
+import java.util.jar.Manifest;
+
+/**
+ * Project parameters read from the manifest of the project jar. The manifest
+ * is read and all parameters are validated at once. Parsed manifests are cached
+ * by the path and the last modification time of the jar
+ *
+ * @author Jakub Hava
+ */
+public class ProjectManifest {
+
+    private static final ConcurrentHashMap<Path, ProjectManifest> cache = new ConcurrentHashMap<>();
+    private final long lastModified;
+    private final String projectName;
+    private final int priority;
+    private final int cores;
+    private final int memory;
+    private final int time;
+    private final String compClass;
+    private final String commanderClass;
+
+    private ProjectManifest(long lastModified, Attributes attr) throws IllegalArgumentException {
+        this.lastModified = lastModified;
+        this.projectName = attr.getValue("Project-Name");
+        if (projectName == null) {
+            throw new IllegalArgumentException("Project name has to be specified in the manifest file");
+        }
+        this.time = parse(attr, "Time-Per-Task", 1, Integer.MAX_VALUE,
+                "Average time has to be specified in the manifest file",
+                "Time has to be integer higher then 0 minutes");
+        this.cores = parse(attr, "Cores-Per-Task", 1, Integer.MAX_VALUE,
+                "Cores limit has to be specified in the manifest file",
+                "Cores limit has to be integer higher then 0");
+        this.memory = parse(attr, "Memory-Per-Task", 1, Integer.MAX_VALUE,
+                "Memory limit has to be specified in the manifest file",
+                "Memory limit has to be integer higher then 0 mb");
+        this.priority = parse(attr, "Project-Priority", 0, 10,
+                "Project priority has to be specified in the manifest file",
+                "Project priority has to be integer in range from 1 to 10");
+        this.compClass = attr.getValue("Main-Comp-Class");
+        if (compClass == null) {
+            throw new IllegalArgumentException("Path to main computation class has to be specified in the manifest file");
+        }
+        this.commanderClass = attr.getValue("Main-Commander-Class");
+    }
+
+    private static int parse(Attributes attr, String name, int min, int max, String missing, String invalid) throws IllegalArgumentException {
+        String value = attr.getValue(name);
+        if (value == null) {
+            throw new IllegalArgumentException(missing);
+        }
+        try {
+            int parsed = Integer.parseInt(value);
+            if (parsed >= min && parsed <= max) {
+                return parsed;
+            } else {
+                throw new IllegalArgumentException(invalid);
+            }
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(invalid);
+        }
+    }
+
+    /**
+     * Reads and validates the manifest of the project jar. If the jar hasn't
+     * been modified since the last reading, the cached manifest is returned
+     *
+     * @param projectJar path to the project jar
+     * @return project manifest
+     * @throws IllegalArgumentException
+     * @throws IOException
+     */
+    public static ProjectManifest read(Path projectJar) throws IllegalArgumentException, IOException {
+        Path key = projectJar.toAbsolutePath().normalize();
+        long lastModified = key.toFile().lastModified();
+        ProjectManifest cached = cache.get(key);
+        if (cached != null && cached.lastModified == lastModified) {
+            return cached;
+        }
+        try (JarInputStream jarStream = new JarInputStream(new FileInputStream(projectJar.toFile()))) {
+            Manifest mf = jarStream.getManifest();
+            if (mf == null) {
+                throw new IllegalArgumentException("Project " + projectJar + " does not contain manifest file");
+            }
+            ProjectManifest manifest = new ProjectManifest(lastModified, mf.getMainAttributes());
+            cache.put(key, manifest);
+            return manifest;
+        } catch (FileNotFoundException e) {
+            throw new IOException("Project " + projectJar + " file not found on given path", e);
+        } catch (IOException e) {
+            throw new IOException("Problem with accesing project jar file " + projectJar, e);
+        }
+    }
+
+    /**
+     * Gets the project name
+     *
+     * @return project name
+     */
+    public String getProjectName() {
+        return projectName;
+    }
+
+    /**
+     * Gets the project priority
+     *
+     * @return project priority
+     */
+    public int getPriority() {
+        return priority;
+    }
+
+    /**
+     * Gets the number of cores needed by task
+     *
+     * @return number of cores needed by task
+     */
+    public int getCores() {
+        return cores;
+    }
+
+    /**
+     * Gets the amount of memory needed by task
+     *
+     * @return amount of memory needed by task
+     */
+    public int getMemory() {
+        return memory;
+    }
+
+    /**
+     * Gets the average time of task to be calculated
+     *
+     * @return average time of task to be calculated
+     */
+    public int getTime() {
+        return time;
+    }
+
+    /**
+     * Gets the name of the main computation class
+     *
+     * @return name of the main computation class
+     */
+    public String getCompClass() {
+        return compClass;
+    }
+
+    /**
+     * Gets the name of the commander class
+     *
+     * @return name of the commander class or null if it is not specified
+     */
+    public String getCommanderClass() {
+        return commanderClass;
+    }
+}
@@ -16,6 +16,8 @@ public class ProjectUID implements Serializable {
 
     private final String clientName;
     private final String projectName;
+    private transient int hash;
+    private transient volatile int handle = -1;
 
     /**
      * Constructor
@@ -30,10 +32,32 @@ public class ProjectUID implements Serializable {
 
     @Override
     public int hashCode() {
-        int hash = 7;
-        hash = 41 * hash + Objects.hashCode(this.clientName);
-        hash = 41 * hash + Objects.hashCode(this.projectName);
-        return hash;
+        int h = hash;
+        if (h == 0) {
+            h = 7;
+            h = 41 * h + Objects.hashCode(this.clientName);
+            h = 41 * h + Objects.hashCode(this.projectName);
+            hash = h;
+        }
+        return h;
+    }
+
+    /**
+     * Gets the handle assigned by the identity registry
+     *
+     * @return handle or -1 if the project ID hasn't been interned
+     */
+    int getHandle() {
+        return handle;
+    }
+
+    /**
+     * Sets the handle assigned by the identity registry
+     *
+     * @param handle handle of the project ID
+     */
+    void setHandle(int handle) {
+        this.handle = handle;
     }
 
     /**
@@ -56,6 +80,9 @@ public class ProjectUID implements Serializable {
 
     @Override
     public boolean equals(Object obj) {
+        if (obj == this) {
+            return true;
+        }
         if (obj == null) {
             return false;
         }
@@ -63,6 +90,9 @@ public class ProjectUID implements Serializable {
             return false;
         }
         final ProjectUID other = (ProjectUID) obj;
+        if (hashCode() != other.hashCode()) {
+            return false;
+        }
         if (!Objects.equals(this.clientName, other.clientName)) {
             return false;
         }
@@ -71,4 +101,11 @@ public class ProjectUID implements Serializable {
         }
         return true;
     }
+
+    /*
+     * Deserialized project IDs are replaced by their canonical instances
+     */
+    private Object readResolve() {
+        return IdentityRegistry.getDefault().intern(this);
+    }
 }
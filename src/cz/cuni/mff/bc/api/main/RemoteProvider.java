@@ -4,18 +4,35 @@
  */
 package cz.cuni.mff.bc.api.main;
 
+import cz.cuni.mff.bc.api.network.ChannelTransfer;
+import cz.cuni.mff.bc.api.network.CodecSelector;
 import cz.cuni.mff.bc.api.network.ProgressChecker;
 import cz.cuni.mff.bc.api.enums.ProjectState;
+import cz.cuni.mff.bc.api.network.DeltaUploader;
 import cz.cuni.mff.bc.api.network.Downloader;
 import cz.cuni.mff.bc.api.network.IUpDown;
+import cz.cuni.mff.bc.api.network.PartFile;
+import cz.cuni.mff.bc.api.network.SegmentedDownloader;
+import cz.cuni.mff.bc.api.network.SegmentedUploader;
+import cz.cuni.mff.bc.api.network.StreamingUploader;
+import cz.cuni.mff.bc.api.network.TransferCodec;
+import cz.cuni.mff.bc.api.network.TransferListener;
 import cz.cuni.mff.bc.api.network.Uploader;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.rmi.RemoteException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import org.cojen.dirmi.Pipe;
 
 /**
  * Provides basic remote methods from the server. Using these methods requires
@@ -32,6 +49,14 @@ public class RemoteProvider {
     private Path uploadDir;
     private Path downloadDir;
     private Path temporaryDir;
+    private int transferSegments = 1;
+    private boolean streamingUpload = false;
+    private boolean deltaUpload = false;
+    private JarCache jarCache;
+    private TransferCodec transferCodec = null;
+    private final CodecSelector codecSelector = new CodecSelector();
+    private TasksInCalculationSync tasksSync;
+    private int inlineLimit = 0;
 
     /**
      * Constructor
@@ -110,6 +135,114 @@ public class RemoteProvider {
         return currentJar;
     }
 
+    /**
+     * Gets the number of segments which are transferred concurrently during
+     * uploading and downloading projects
+     *
+     * @return number of segments
+     */
+    public int getTransferSegments() {
+        return transferSegments;
+    }
+
+    /**
+     * Sets the number of segments which are transferred concurrently during
+     * uploading and downloading projects. If it is set to 1, the project is
+     * transferred through one pipe
+     *
+     * @param transferSegments number of segments
+     */
+    public void setTransferSegments(int transferSegments) {
+        if (transferSegments <= 0) {
+            throw new IllegalArgumentException("Number of segments has to be integer higher then 0");
+        }
+        this.transferSegments = transferSegments;
+    }
+
+    /**
+     * Checks if the projects are uploaded in streaming mode
+     *
+     * @return true if the streaming mode is used, false otherwise
+     */
+    public boolean isStreamingUpload() {
+        return streamingUpload;
+    }
+
+    /**
+     * Sets whether the projects are uploaded in streaming mode. In this mode
+     * the project jar and data are compressed directly into the pipe and no
+     * temporary file is created. Streaming mode has precedence over the
+     * segmented transfer, because the size of the compressed file is not known
+     * in advance
+     *
+     * @param streamingUpload true if the streaming mode should be used
+     */
+    public void setStreamingUpload(boolean streamingUpload) {
+        this.streamingUpload = streamingUpload;
+    }
+
+    /**
+     * Checks if the projects are uploaded in delta mode
+     *
+     * @return true if the delta mode is used, false otherwise
+     */
+    public boolean isDeltaUpload() {
+        return deltaUpload;
+    }
+
+    /**
+     * Sets whether the projects are uploaded in delta mode. In this mode the
+     * project jar and data are split into content defined chunks and only the
+     * chunks which are not stored on the server are uploaded. Delta mode has
+     * precedence over the streaming and segmented transfers
+     *
+     * @param deltaUpload true if the delta mode should be used
+     */
+    public void setDeltaUpload(boolean deltaUpload) {
+        this.deltaUpload = deltaUpload;
+    }
+
+    /**
+     * Gets the codec used to compress the data during uploading and
+     * downloading projects
+     *
+     * @return transfer codec or null if the codec is selected automatically
+     */
+    public TransferCodec getTransferCodec() {
+        return transferCodec;
+    }
+
+    /**
+     * Sets the codec used to compress the data during uploading and
+     * downloading projects. The codec is used only if the server supports it.
+     * Segmented and streaming transfers don't use the codecs
+     *
+     * @param transferCodec transfer codec or null if the codec should be
+     * selected automatically according to the measured throughput
+     */
+    public void setTransferCodec(TransferCodec transferCodec) {
+        this.transferCodec = transferCodec;
+    }
+
+    /**
+     * Gets the cache of project jars
+     *
+     * @return jar cache or null if the cache is not used
+     */
+    public JarCache getJarCache() {
+        return jarCache;
+    }
+
+    /**
+     * Sets the cache of project jars which is consulted before the project jar
+     * is downloaded
+     *
+     * @param jarCache jar cache, null if the cache shouldn't be used
+     */
+    public void setJarCache(JarCache jarCache) {
+        this.jarCache = jarCache;
+    }
+
     /**
      * Sends to the server information about amount of memory which can be used
      * during task computation
@@ -121,6 +254,30 @@ public class RemoteProvider {
         remoteService.setClientsMemoryLimit(clientName, memory);
     }
 
+    /**
+     * Sets the client's limit of the inline task data
+     *
+     * @param bytes maximal size of the inline data in bytes, 0 disables the
+     * inline data
+     * @throws RemoteException
+     */
+    public void setInlineLimit(int bytes) throws RemoteException {
+        if (bytes < 0) {
+            throw new IllegalArgumentException("Inline limit has to be integer higher or equal to 0");
+        }
+        remoteService.setClientsInlineLimit(clientName, bytes);
+        inlineLimit = bytes;
+    }
+
+    /**
+     * Gets the client's limit of the inline task data
+     *
+     * @return maximal size of the inline data in bytes
+     */
+    public int getInlineLimit() {
+        return inlineLimit;
+    }
+
     /**
      * Sends to server information about number of cores which can be used
      * during task computation
@@ -132,6 +289,160 @@ public class RemoteProvider {
         remoteService.setClientsCoresLimit(clientName, cores);
     }
 
+    /**
+     * Gets task from the server
+     *
+     * @param projectUID project unique ID which tells from which project will
+     * be the task downloaded
+     * @return the task
+     * @throws RemoteException
+     */
+    public Task getTask(ProjectUID projectUID) throws RemoteException {
+        return remoteService.getTask(clientName, projectUID);
+    }
+
+    /**
+     * Gets several tasks from the server in one call. The number of tasks is
+     * limited by maxTasks and by the client's cores and memory limits set on
+     * the server
+     *
+     * @param projectUID project unique ID which tells from which project will
+     * be the tasks downloaded
+     * @param maxTasks maximal number of tasks to be returned
+     * @return list of tasks, empty if there are no tasks available
+     * @throws RemoteException
+     */
+    public ArrayList<Task> getTasks(ProjectUID projectUID, int maxTasks) throws RemoteException {
+        if (maxTasks <= 0) {
+            throw new IllegalArgumentException("Maximal number of tasks has to be integer higher then 0");
+        }
+        ArrayList<Task> tasks = remoteService.getTasks(clientName, projectUID, maxTasks);
+        if (tasks == null) {
+            return new ArrayList<>();
+        } else {
+            return tasks;
+        }
+    }
+
+    /**
+     * Saves the completed task on the server
+     *
+     * @param task task to be saved
+     * @throws RemoteException
+     */
+    public void saveCompletedTask(Task task) throws RemoteException {
+        remoteService.saveCompletedTask(clientName, task);
+    }
+
+    /**
+     * Saves several completed tasks on the server in one call
+     *
+     * @param tasks tasks to be saved
+     * @return list of acknowledgements, the i-th item is true if the i-th task
+     * has been saved on the server, false if it has been rejected
+     * @throws RemoteException
+     */
+    public ArrayList<Boolean> saveCompletedTasks(ArrayList<Task> tasks) throws RemoteException {
+        return remoteService.saveCompletedTasks(clientName, tasks);
+    }
+
+    /**
+     * Creates and starts the submitter which sends completed tasks to the
+     * server asynchronously in batches
+     *
+     * @param batchSize maximal number of tasks sent in one call
+     * @param flushInterval maximal time in milliseconds for which the completed
+     * task waits in the buffer
+     * @param capacity capacity of the buffer
+     * @return task submitter
+     */
+    public TaskSubmitter createTaskSubmitter(int batchSize, long flushInterval, int capacity) {
+        TaskSubmitter submitter = new TaskSubmitter(remoteService, clientName, batchSize, flushInterval, capacity);
+        executor.submit(submitter);
+        return submitter;
+    }
+
+    /**
+     * Creates and starts the pipelined task runner. Tasks are prepared in
+     * advance and submitted while other tasks are calculated
+     *
+     * @param handler handler which prepares and finishes the tasks
+     * @param submitter submitter which sends the completed tasks to the server
+     * @param prefetchDepth number of tasks prepared in advance
+     * @return pipelined task runner
+     */
+    public PipelinedTaskRunner createPipelinedTaskRunner(TaskHandler handler, TaskSubmitter submitter, int prefetchDepth) {
+        return createPipelinedTaskRunner(handler, submitter, null, prefetchDepth);
+    }
+
+    /**
+     * Creates and starts the pipelined task runner which calculates the tasks
+     * by the local task scheduler and leases only as many tasks as the
+     * scheduler can admit
+     *
+     * @param handler handler which prepares and finishes the tasks
+     * @param submitter submitter which sends the completed tasks to the server
+     * @param scheduler local task scheduler, can be null
+     * @param prefetchDepth number of tasks prepared in advance
+     * @return pipelined task runner
+     */
+    public PipelinedTaskRunner createPipelinedTaskRunner(TaskHandler handler, TaskSubmitter submitter, LocalTaskScheduler scheduler, int prefetchDepth) {
+        PipelinedTaskRunner runner = new PipelinedTaskRunner(remoteService, clientName, handler, submitter, prefetchDepth);
+        runner.setScheduler(scheduler);
+        executor.submit(runner);
+        return runner;
+    }
+
+    /**
+     * Creates the local task scheduler and sets the same cores and memory
+     * limits of the client on the server
+     *
+     * @param cores number of cores which can be used by the tasks
+     * @param memory amount of memory in mb which can be used by the tasks
+     * @return local task scheduler
+     * @throws RemoteException
+     */
+    public LocalTaskScheduler createLocalTaskScheduler(int cores, int memory) throws RemoteException {
+        setCoresLimit(cores);
+        setMemoryLimit(memory);
+        return new LocalTaskScheduler(cores, memory);
+    }
+
+    /**
+     * Sends to the server the change of the tasks currently calculated on the
+     * client since the last call of this method
+     *
+     * @param tasksInCalculation tasks currently calculated on the client
+     * @return the list of task which calculation is supposed to be terminated
+     * @throws RemoteException
+     */
+    public synchronized ArrayList<TaskID> sendTasksInCalculation(Collection<TaskID> tasksInCalculation) throws RemoteException {
+        if (tasksSync == null) {
+            tasksSync = new TasksInCalculationSync(remoteService, clientName);
+        }
+        return tasksSync.synchronize(tasksInCalculation);
+    }
+
+    /**
+     * Registers the listener which is notified by the server when the tasks
+     * calculated on this client become obsolete
+     *
+     * @param listener task event listener
+     * @throws RemoteException
+     */
+    public void registerTaskEventListener(ITaskEventListener listener) throws RemoteException {
+        remoteService.registerTaskEventListener(clientName, listener);
+    }
+
+    /**
+     * Unregisters the task event listener
+     *
+     * @throws RemoteException
+     */
+    public void unregisterTaskEventListener() throws RemoteException {
+        remoteService.unregisterTaskEventListener(clientName);
+    }
+
     /**
      * Checks if the project is ready for download
      *
@@ -178,7 +489,8 @@ public class RemoteProvider {
     }
 
     /**
-     * Downloads the project
+     * Downloads the project. If the target file contains part of the project
+     * from previous interrupted downloading, the downloading is resumed
      *
      * @param projectName project name
      * @param target path where the project will be downloaded
@@ -187,8 +499,30 @@ public class RemoteProvider {
      * @throws RemoteException
      */
     public ProgressChecker downloadProject(String projectName, Path target) throws RemoteException {
+        return downloadProject(projectName, target, null);
+    }
+
+    /**
+     * Downloads the project. If the target file contains part of the project
+     * from previous interrupted downloading, the downloading is resumed
+     *
+     * @param projectName project name
+     * @param target path where the project will be downloaded
+     * @param listener listener which receives events about downloading, can
+     * be null
+     * @return ProgressChecker - object used to get information about
+     * downloading status
+     * @throws RemoteException
+     */
+    public ProgressChecker downloadProject(String projectName, Path target, TransferListener listener) throws RemoteException {
         if (isProjectReadyForDownload(projectName)) {
-            IUpDown downloader = new Downloader(remoteService, clientName, projectName, target);
+            IUpDown downloader;
+            if (transferSegments > 1) {
+                downloader = new SegmentedDownloader(remoteService, clientName, projectName, target, transferSegments);
+            } else {
+                downloader = new Downloader(remoteService, clientName, projectName, target, transferCodec, codecSelector);
+            }
+            downloader.addTransferListener(listener);
             Future<?> f = executor.submit(downloader);
             return new ProgressChecker(f, downloader);
         } else {
@@ -196,6 +530,45 @@ public class RemoteProvider {
         }
     }
 
+    /**
+     * Downloads the project jar. If the jar cache is set, the jar is taken
+     * from the cache when possible and the downloaded jar is put to the cache.
+     * The jar is downloaded to the partial file next to the destination and an
+     * interrupted downloading of the same jar is resumed
+     *
+     * @param projectUID unique ID of the project
+     * @param destination path where the jar is stored
+     * @throws RemoteException
+     * @throws IOException
+     */
+    public void downloadProjectJar(ProjectUID projectUID, Path destination) throws RemoteException, IOException {
+        String hash = remoteService.getProjectJarHash(projectUID);
+        if (jarCache != null) {
+            FileChannel cached = jarCache.get(hash);
+            if (cached != null) {
+                try (InputStream in = Channels.newInputStream(cached)) {
+                    Files.copy(in, destination, StandardCopyOption.REPLACE_EXISTING);
+                }
+                return;
+            }
+        }
+        PartFile partFile = new PartFile(destination, hash);
+        long position = partFile.getResumeOffset(Long.MAX_VALUE);
+        try (FileChannel out = FileChannel.open(partFile.getPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+                Pipe pipe = remoteService.downloadProjectJar(projectUID, position, null)) {
+            out.truncate(position);
+            InputStream in = pipe.getInputStream();
+            long n;
+            while ((n = ChannelTransfer.transferChunk(in, out, position, Long.MAX_VALUE)) > 0) {
+                position += n;
+            }
+        }
+        partFile.complete();
+        if (jarCache != null) {
+            jarCache.put(hash, destination);
+        }
+    }
+
     /**
      * Uploads the project
      *
@@ -207,20 +580,47 @@ public class RemoteProvider {
      * @throws IOException
      */
     public ProgressChecker uploadProject(Path projectJar, Path projectData) throws RemoteException, IOException {
+        return uploadProject(projectJar, projectData, null);
+    }
+
+    /**
+     * Uploads the project
+     *
+     * @param projectJar path to project jar
+     * @param projectData path to project data
+     * @param listener listener which receives events about uploading, can be
+     * null
+     * @return ProgressChecker - object used to get information about uploading
+     * status
+     * @throws RemoteException
+     * @throws IOException
+     */
+    public ProgressChecker uploadProject(Path projectJar, Path projectData, TransferListener listener) throws RemoteException, IOException {
         try {
-            String projectName = JarTools.getAttributeFromManifest(projectJar, "Project-Name");
-            int priority = Integer.parseInt(JarTools.getAttributeFromManifest(projectJar, "Project-Priority"));
-            int cores = Integer.parseInt(JarTools.getAttributeFromManifest(projectJar, "Cores-Per-Task"));
-            int memory = Integer.parseInt(JarTools.getAttributeFromManifest(projectJar, "Memory-Per-Task"));
-            int time = Integer.parseInt(JarTools.getAttributeFromManifest(projectJar, "Time-Per-Task"));
+            ProjectManifest manifest = ProjectManifest.read(projectJar);
+            String projectName = manifest.getProjectName();
+            int priority = manifest.getPriority();
+            int cores = manifest.getCores();
+            int memory = manifest.getMemory();
+            int time = manifest.getTime();
             if (!isProjectExists(projectName)) {
-                IUpDown uploader = new Uploader(remoteService, projectJar, projectData, temporaryDir, clientName, projectName, priority, cores, memory, time);
+                IUpDown uploader;
+                if (deltaUpload) {
+                    uploader = new DeltaUploader(remoteService, projectJar, projectData, clientName, projectName, priority, cores, memory, time);
+                } else if (streamingUpload) {
+                    uploader = new StreamingUploader(remoteService, projectJar, projectData, clientName, projectName, priority, cores, memory, time);
+                } else if (transferSegments > 1) {
+                    uploader = new SegmentedUploader(remoteService, projectJar, projectData, temporaryDir, clientName, projectName, priority, cores, memory, time, transferSegments);
+                } else {
+                    uploader = new Uploader(remoteService, projectJar, projectData, temporaryDir, clientName, projectName, priority, cores, memory, time, transferCodec, codecSelector);
+                }
+                uploader.addTransferListener(listener);
                 Future<?> f = executor.submit(uploader);
                 return new ProgressChecker(f, uploader);
             } else {
                 return null;
             }
-        } catch (NumberFormatException e) {
+        } catch (IllegalArgumentException e) {
             throw new IOException("Incorrect values in jar manifest file:", e);
         }
     }
@@ -275,6 +675,28 @@ public class RemoteProvider {
         remoteService.markProjectAsCorrupted(ownerName, projectName);
     }
 
+    /**
+     * Enables or disables the result memoization of the project
+     *
+     * @param projectName project name
+     * @param enabled true if the memoization should be enabled
+     * @throws RemoteException
+     */
+    public void setResultMemoization(String projectName, boolean enabled) throws RemoteException {
+        remoteService.setResultMemoization(clientName, projectName, enabled);
+    }
+
+    /**
+     * Enables or disables the speculative execution of the project
+     *
+     * @param projectName project name
+     * @param enabled true if the speculative execution should be enabled
+     * @throws RemoteException
+     */
+    public void setSpeculativeExecution(String projectName, boolean enabled) throws RemoteException {
+        remoteService.setSpeculativeExecution(clientName, projectName, enabled);
+    }
+
     /**
      * Gets list of all client's projects
      *
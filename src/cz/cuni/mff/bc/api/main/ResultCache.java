@@ -0,0 +1,210 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package cz.cuni.mff.bc.api.main;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Cache of task results. Results are stored under the key computed from the
+ * hash of the project jar, the name of the computation class and the hash of
+ * the task input data, so the task with byte-identical input of the same
+ * project doesn't have to be calculated again. The least recently used
+ * results are removed when the size of the cache exceeds the limit. Cached
+ * results are returned as channels opened under the lock of the cache, so the
+ * result can be read even if it is evicted concurrently. Hits and misses are
+ * counted for each project until the project is removed or no longer used
+ *
+ * @author Jakub Hava
+ */
+public class ResultCache {
+
+    private final Path cacheDir;
+    private final long maxBytes;
+    private final LinkedHashMap<String, Long> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final WeakHashMap<ProjectUID, int[]> statistics = new WeakHashMap<>();
+    private long usedBytes = 0;
+
+    /**
+     * Constructor. Results which are already present in the cache directory
+     * are loaded to the cache
+     *
+     * @param cacheDir directory where the results are stored
+     * @param maxBytes maximal size of the cache in bytes
+     */
+    public ResultCache(Path cacheDir, long maxBytes) {
+        this.cacheDir = cacheDir;
+        this.maxBytes = maxBytes;
+        File[] files = CustomIO.createFolder(cacheDir).listFiles();
+        if (files != null) {
+            Arrays.sort(files, new Comparator<File>() {
+                @Override
+                public int compare(File f1, File f2) {
+                    return Long.compare(f1.lastModified(), f2.lastModified());
+                }
+            });
+            for (File file : files) {
+                if (file.isFile() && CustomIO.getExtension(file).equals("result")) {
+                    String name = file.getName();
+                    entries.put(name.substring(0, name.length() - ".result".length()), file.length());
+                    usedBytes += file.length();
+                }
+            }
+        }
+    }
+
+    /**
+     * Creates the key of the task result
+     *
+     * @param jarHash SHA-256 hash of the project jar
+     * @param compClass name of the main computation class
+     * @param inputHash SHA-256 hash of the task input data
+     * @return key of the task result
+     * @throws IOException
+     */
+    public static String createKey(String jarHash, String compClass, String inputHash) throws IOException {
+        return CustomIO.getHash((jarHash + "\n" + compClass + "\n" + inputHash).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private Path getPath(String key) {
+        return cacheDir.resolve(key + ".result");
+    }
+
+    /**
+     * Gets the cached result and counts the hit or miss of the project. The
+     * returned channel has to be closed by the caller
+     *
+     * @param key key of the task result
+     * @param projectUID unique ID of the project
+     * @return channel for reading the cached result or null if the result is
+     * not in the cache
+     */
+    public synchronized FileChannel get(String key, ProjectUID projectUID) {
+        int[] counts = statistics.get(projectUID);
+        if (counts == null) {
+            counts = new int[2];
+            // canonical ID is kept as long as the project is used
+            statistics.put(IdentityRegistry.getDefault().intern(projectUID), counts);
+        }
+        FileChannel channel = null;
+        if (entries.get(key) != null) {
+            Path path = getPath(key);
+            try {
+                channel = FileChannel.open(path, StandardOpenOption.READ);
+                path.toFile().setLastModified(System.currentTimeMillis());
+            } catch (IOException e) {
+                usedBytes -= entries.remove(key);
+            }
+        }
+        counts[channel == null ? 1 : 0]++;
+        return channel;
+    }
+
+    /**
+     * Puts the result to the cache. The result is copied before the cache is
+     * locked
+     *
+     * @param key key of the task result
+     * @param result path to the result
+     * @throws IOException
+     */
+    public void put(String key, Path result) throws IOException {
+        Path tmp = Files.createTempFile(cacheDir, key, ".tmp");
+        Files.copy(result, tmp, StandardCopyOption.REPLACE_EXISTING);
+        store(key, tmp);
+    }
+
+    /**
+     * Puts the result to the cache. The result is written before the cache is
+     * locked
+     *
+     * @param key key of the task result
+     * @param result result data
+     * @throws IOException
+     */
+    public void put(String key, byte[] result) throws IOException {
+        Path tmp = Files.createTempFile(cacheDir, key, ".tmp");
+        Files.write(tmp, result);
+        store(key, tmp);
+    }
+
+    private synchronized void store(String key, Path tmp) throws IOException {
+        Path path = getPath(key);
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        Long previous = entries.put(key, path.toFile().length());
+        if (previous != null) {
+            usedBytes -= previous;
+        }
+        usedBytes += path.toFile().length();
+        evict(key);
+    }
+
+    /**
+     * Gets the number of cache hits of the project. The server passes it to
+     * the project info returned by getProjectList
+     *
+     * @param projectUID unique ID of the project
+     * @return number of cache hits
+     */
+    public synchronized int getHits(ProjectUID projectUID) {
+        int[] counts = statistics.get(projectUID);
+        return counts == null ? 0 : counts[0];
+    }
+
+    /**
+     * Gets the number of cache misses of the project. The server passes it to
+     * the project info returned by getProjectList
+     *
+     * @param projectUID unique ID of the project
+     * @return number of cache misses
+     */
+    public synchronized int getMisses(ProjectUID projectUID) {
+        int[] counts = statistics.get(projectUID);
+        return counts == null ? 0 : counts[1];
+    }
+
+    /**
+     * Removes the statistics of the project. It should be called once the
+     * project is removed, for example when it is cancelled or completed
+     *
+     * @param projectUID unique ID of the project
+     */
+    public synchronized void removeProject(ProjectUID projectUID) {
+        statistics.remove(projectUID);
+    }
+
+    /**
+     * Gets the size of all cached results
+     *
+     * @return size of all cached results in bytes
+     */
+    public synchronized long getUsedBytes() {
+        return usedBytes;
+    }
+
+    private void evict(String keep) {
+        Iterator<Map.Entry<String, Long>> it = entries.entrySet().iterator();
+        while (usedBytes > maxBytes && it.hasNext()) {
+            Map.Entry<String, Long> entry = it.next();
+            if (!entry.getKey().equals(keep)) {
+                getPath(entry.getKey()).toFile().delete();
+                usedBytes -= entry.getValue();
+                it.remove();
+            }
+        }
+    }
+}
@@ -12,6 +12,7 @@ import static cz.cuni.mff.bc.api.enums.ProjectState.PAUSED;
 import static cz.cuni.mff.bc.api.enums.ProjectState.PREPARING;
 import static cz.cuni.mff.bc.api.enums.ProjectState.READY_FOR_DOWNLOAD;
 import cz.cuni.mff.bc.api.network.ProgressChecker;
+import cz.cuni.mff.bc.api.network.TransferListener;
 import java.io.IOException;
 import java.nio.file.Path;
 import java.rmi.RemoteException;
@@ -355,37 +356,9 @@ public class StandardRemoteProvider {
     public void download(String projectName, Path destination) {
         try {
             if (remoteProvider.isProjectExists(projectName)) {
-                final String projectNameLocal = projectName;
-                final ProgressChecker pc = remoteProvider.downloadProject(projectName, destination);
+                ProgressChecker pc = remoteProvider.downloadProject(projectName, destination, new LoggingTransferListener(projectName, "Downloading", "Downloaded", "downloaded"));
                 if (pc != null) {
-                    new Thread(new Runnable() {
-                        @Override
-                        public void run() {
-                            try {
-                                LOG.log(Level.INFO, "Project: {0}, Preparing files for download. Downloading will start immedeatelly after.", projectNameLocal);
-                                while (!pc.hasStarted()) {
-                                    Thread.sleep(100);
-                                }
-                                LOG.log(Level.FINE, "Project: {0}, Downloading started", projectNameLocal);
-                                LOG.log(Level.FINE, "Project: {0}, Downloaded: 0 %...", projectNameLocal);
-                                while (pc.isInProgress()) {
-                                    Thread.sleep(timeout);
-                                    LOG.log(Level.FINE, "Project: {0}, Downloaded: {1} %...", new Object[]{projectNameLocal, pc.getProgress()});
-                                }
-                            } catch (InterruptedException e) {
-                                LOG.log(Level.FINE, "Progress checking during downloading has been interupted: {0}", e.getMessage());
-                            }
-                            try {
-                                pc.wasSuccesful();
-                                LOG.log(Level.FINE, "Project: {0}, Downloaded: 100 %...", projectNameLocal);
-                                LOG.log(Level.INFO, "Project {0} has been downloaded", projectNameLocal);
-                            } catch (RemoteException e) {
-                                LOG.log(Level.WARNING, "Problem with network during downloading: {0}", e.getMessage());
-                            } catch (IOException e) {
-                                LOG.log(Level.WARNING, "Problem with accessing file on server side: {0}", e.getMessage());
-                            }
-                        }
-                    }).start();
+                    LOG.log(Level.INFO, "Project: {0}, Preparing files for download. Downloading will start immedeatelly after.", projectName);
                 } else {
                     LOG.log(Level.WARNING, "Project {0} is not ready for download", projectName);
                 }
@@ -409,35 +382,10 @@ public class StandardRemoteProvider {
             CustomIO.projectJarExistsAndValid(projectJar);
             CustomIO.projectDataExistsAndValid(projectData);
             JarTools.checkProjectParams(projectJar);
-            final String projectName = JarTools.getAttributeFromManifest(projectJar, "Project-Name");
-            final ProgressChecker pc = remoteProvider.uploadProject(projectJar, projectData);
+            String projectName = ProjectManifest.read(projectJar).getProjectName();
+            ProgressChecker pc = remoteProvider.uploadProject(projectJar, projectData, new LoggingTransferListener(projectName, "Uploading", "Uploaded", "uploaded"));
             if (pc != null) {
-                new Thread(new Runnable() {
-                    @Override
-                    public void run() {
-                        try {
-                            LOG.log(Level.INFO, "Project: {0}, Preparing files for upload. Uploading will start immedeatelly after.", projectName);
-                            while (!pc.hasStarted()) {
-                                Thread.sleep(100);
-                            }
-                            LOG.log(Level.FINE, "Project: {0}, Uploading started", projectName);
-                            LOG.log(Level.FINE, "Project: {0}, Uploaded: 0 %...", projectName);
-                            while (pc.isInProgress()) {
-                                Thread.sleep(timeout);
-                                LOG.log(Level.FINE, "Project: {0}, Uploaded: {1} %...", new Object[]{projectName, pc.getProgress()});
-                            }
-                        } catch (InterruptedException e) {
-                            LOG.log(Level.FINE, "Progress checking during uploading has been interupted: {0}", e.getMessage());
-                        }
-                        try {
-                            pc.wasSuccesful();
-                            LOG.log(Level.FINE, "Project: {0}, Uploaded: 100 %...", projectName);
-                            LOG.log(Level.INFO, "Project {0} has been uploaded", projectName);
-                        } catch (IOException e) {
-                            LOG.log(Level.WARNING, "Problem with accessing file: {0}", e.getMessage());
-                        }
-                    }
-                }).start();
+                LOG.log(Level.INFO, "Project: {0}, Preparing files for upload. Uploading will start immedeatelly after.", projectName);
             } else {
                 LOG.log(Level.INFO, "Project with name {0} already exists", projectName);
             }
@@ -512,4 +460,57 @@ public class StandardRemoteProvider {
             LOG.log(Level.WARNING, "Not connected to server: {0}", e.getMessage());
         }
     }
+
+    /**
+     * Listener which logs the progress of uploading or downloading. The
+     * progress is logged at most once per timeout
+     */
+    private static class LoggingTransferListener implements TransferListener {
+
+        private final String projectName;
+        private final String action;
+        private final String progressLabel;
+        private final String doneLabel;
+        private long lastLog;
+
+        LoggingTransferListener(String projectName, String action, String progressLabel, String doneLabel) {
+            this.projectName = projectName;
+            this.action = action;
+            this.progressLabel = progressLabel;
+            this.doneLabel = doneLabel;
+        }
+
+        @Override
+        public void transferStarted(long totalBytes) {
+            lastLog = System.currentTimeMillis();
+            LOG.log(Level.FINE, "Project: {0}, {1} started", new Object[]{projectName, action});
+            LOG.log(Level.FINE, "Project: {0}, {1}: 0 %...", new Object[]{projectName, progressLabel});
+        }
+
+        @Override
+        public void transferProgressed(long bytes, long totalBytes, long rate, long eta) {
+            long now = System.currentTimeMillis();
+            if (now - lastLog >= timeout && totalBytes > 0) {
+                lastLog = now;
+                int progress = (int) Math.ceil(100 / (float) totalBytes * bytes);
+                LOG.log(Level.FINE, "Project: {0}, {1}: {2} %..., {3} kB/s, remaining {4} s",
+                        new Object[]{projectName, progressLabel, progress, rate / 1024, eta < 0 ? "?" : eta / 1000});
+            }
+        }
+
+        @Override
+        public void transferCompleted(long bytes) {
+            LOG.log(Level.FINE, "Project: {0}, {1}: 100 %...", new Object[]{projectName, progressLabel});
+            LOG.log(Level.INFO, "Project {0} has been {1}", new Object[]{projectName, doneLabel});
+        }
+
+        @Override
+        public void transferFailed(Exception e) {
+            if (e instanceof RemoteException) {
+                LOG.log(Level.WARNING, "Problem with network during {0}: {1}", new Object[]{action.toLowerCase(), e.getMessage()});
+            } else {
+                LOG.log(Level.WARNING, "Problem with accessing file: {0}", e.getMessage());
+            }
+        }
+    }
 }
@@ -0,0 +1,235 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package cz.cuni.mff.bc.api.main;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Tracks the leased tasks for the speculative execution. Task which runs much
+ * longer than expected is a straggler and its duplicate can be leased to the
+ * idle client. The first returned result is accepted and the other copies are
+ * put to the termination lists of their clients, which are sent back as the
+ * tasks to terminate in the reply to the synchronization of the tasks in
+ * calculation. The expected duration of the task is taken from the observed
+ * durations of the project tasks or from the average time declared in the task
+ * ID when there is not enough history
+ *
+ * @author Jakub Hava
+ */
+public class StragglerTracker {
+
+    private static final int MIN_HISTORY = 5;
+    private static final double SMOOTHING = 0.8;
+    private final double slowdownFactor;
+    private final int maxCopies;
+    private final LinkedHashMap<TaskID, ArrayList<Copy>> running = new LinkedHashMap<>();
+    private final HashMap<ProjectUID, History> histories = new HashMap<>();
+    private final HashMap<String, ArrayList<TaskID>> terminations = new HashMap<>();
+
+    private static class Copy {
+
+        private final String clientName;
+        private final long started;
+
+        Copy(String clientName, long started) {
+            this.clientName = clientName;
+            this.started = started;
+        }
+    }
+
+    private static class History {
+
+        private double average;
+        private int count = 0;
+    }
+
+    /**
+     * Constructor
+     *
+     * @param slowdownFactor how many times longer than expected the task has
+     * to run to be considered a straggler
+     * @param maxCopies maximal number of concurrently running copies of one
+     * task
+     */
+    public StragglerTracker(double slowdownFactor, int maxCopies) {
+        if (slowdownFactor <= 1 || maxCopies < 2) {
+            throw new IllegalArgumentException("Slowdown factor has to be higher then 1 and maximal number of copies at least 2");
+        }
+        this.slowdownFactor = slowdownFactor;
+        this.maxCopies = maxCopies;
+    }
+
+    /**
+     * Records that the task has been leased to the client
+     *
+     * @param taskID unique ID of the task
+     * @param clientName client's name
+     * @param now current time in milliseconds
+     */
+    public synchronized void leased(TaskID taskID, String clientName, long now) {
+        ArrayList<Copy> copies = running.get(taskID);
+        if (copies == null) {
+            copies = new ArrayList<>();
+            running.put(taskID, copies);
+        }
+        copies.add(new Copy(clientName, now));
+    }
+
+    /**
+     * Records that the client has returned the task without the result, for
+     * example because its calculation has been cancelled
+     *
+     * @param taskID unique ID of the task
+     * @param clientName client's name
+     */
+    public synchronized void returned(TaskID taskID, String clientName) {
+        ArrayList<Copy> copies = running.get(taskID);
+        if (copies != null) {
+            removeCopy(copies, clientName);
+            if (copies.isEmpty()) {
+                running.remove(taskID);
+            }
+        }
+    }
+
+    /**
+     * Records that the client has completed the task. If this is the first
+     * result of the task, the other running copies are put to the termination
+     * lists of their clients
+     *
+     * @param taskID unique ID of the task
+     * @param clientName client's name
+     * @param now current time in milliseconds
+     * @return true if the result should be accepted, false if the task has
+     * been already completed by another client
+     */
+    public synchronized boolean completed(TaskID taskID, String clientName, long now) {
+        ArrayList<Copy> copies = running.remove(taskID);
+        if (copies == null) {
+            return false;
+        }
+        Copy winner = removeCopy(copies, clientName);
+        if (winner == null) {
+            running.put(taskID, copies);
+            return false;
+        }
+        History history = histories.get(taskID.getProjectUID());
+        if (history == null) {
+            history = new History();
+            histories.put(taskID.getProjectUID(), history);
+        }
+        long duration = now - winner.started;
+        history.average = history.count == 0 ? duration : SMOOTHING * history.average + (1 - SMOOTHING) * duration;
+        history.count++;
+        for (Copy loser : copies) {
+            ArrayList<TaskID> list = terminations.get(loser.clientName);
+            if (list == null) {
+                list = new ArrayList<>();
+                terminations.put(loser.clientName, list);
+            }
+            list.add(taskID);
+        }
+        return true;
+    }
+
+    /**
+     * Finds the stragglers which should be duplicated. The task is a straggler
+     * if even its newest copy runs longer than expected. Only tasks with less
+     * than the maximal number of copies are returned, the most overdue first
+     *
+     * @param now current time in milliseconds
+     * @param idleClients number of idle clients which can calculate the
+     * duplicates
+     * @return tasks which should be leased again
+     */
+    public synchronized ArrayList<TaskID> findStragglers(final long now, int idleClients) {
+        ArrayList<TaskID> stragglers = new ArrayList<>();
+        if (idleClients <= 0) {
+            return stragglers;
+        }
+        final HashMap<TaskID, Double> overdue = new HashMap<>();
+        for (Map.Entry<TaskID, ArrayList<Copy>> entry : running.entrySet()) {
+            ArrayList<Copy> copies = entry.getValue();
+            if (copies.isEmpty() || copies.size() >= maxCopies) {
+                continue;
+            }
+            // newest copy has to be overdue too, otherwise the task would be
+            // duplicated again on every call
+            long newest = copies.get(0).started;
+            for (Copy copy : copies) {
+                newest = Math.max(newest, copy.started);
+            }
+            long elapsed = now - newest;
+            double ratio = elapsed / (double) getExpectedDuration(entry.getKey());
+            if (ratio > slowdownFactor) {
+                stragglers.add(entry.getKey());
+                overdue.put(entry.getKey(), ratio);
+            }
+        }
+        Collections.sort(stragglers, new Comparator<TaskID>() {
+            @Override
+            public int compare(TaskID t1, TaskID t2) {
+                return Double.compare(overdue.get(t2), overdue.get(t1));
+            }
+        });
+        return new ArrayList<>(stragglers.subList(0, Math.min(idleClients, stragglers.size())));
+    }
+
+    /**
+     * Gets the expected duration of the task
+     *
+     * @param taskID unique ID of the task
+     * @return expected duration in milliseconds
+     */
+    public synchronized long getExpectedDuration(TaskID taskID) {
+        History history = histories.get(taskID.getProjectUID());
+        if (history != null && history.count >= MIN_HISTORY) {
+            return Math.max(1, (long) history.average);
+        }
+        return Math.max(1, taskID.getTime()) * 60 * 1000L;
+    }
+
+    /**
+     * Gets and clears the copies which the client is supposed to terminate
+     * because another client has completed them first
+     *
+     * @param clientName client's name
+     * @return tasks to terminate
+     */
+    public synchronized ArrayList<TaskID> takeTerminations(String clientName) {
+        ArrayList<TaskID> list = terminations.remove(clientName);
+        return list == null ? new ArrayList<TaskID>() : list;
+    }
+
+    /**
+     * Forgets the tasks of the project, for example when the project is
+     * cancelled
+     *
+     * @param projectUID unique ID of the project
+     */
+    public synchronized void removeProject(ProjectUID projectUID) {
+        for (Iterator<TaskID> it = running.keySet().iterator(); it.hasNext();) {
+            if (it.next().getProjectUID().equals(projectUID)) {
+                it.remove();
+            }
+        }
+        histories.remove(projectUID);
+    }
+
+    private static Copy removeCopy(ArrayList<Copy> copies, String clientName) {
+        for (int i = 0; i < copies.size(); i++) {
+            if (copies.get(i).clientName.equals(clientName)) {
+                return copies.remove(i);
+            }
+        }
+        return null;
+    }
+}
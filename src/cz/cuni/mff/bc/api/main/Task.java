@@ -5,22 +5,49 @@
 package cz.cuni.mff.bc.api.main;
 
 import cz.cuni.mff.bc.api.enums.TaskState;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
-import java.io.Serializable;
+import java.io.ByteArrayOutputStream;
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.io.OutputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 
 /**
- * Class representing task
+ * Class representing task. Tasks are serialized in the compact versioned
+ * format, see TaskID. Small input data and results can be carried inline in
+ * the task, so no data files have to be created for them
  *
  * @author Jakub Hava
  */
-public class Task implements Serializable {
+public class Task implements Externalizable {
 
+    // the format is versioned by WireFormat, so the class can change freely
+    private static final long serialVersionUID = 1L;
     private TaskID unicateTaskID;
     private ITask computeTask;
     private TaskState state = TaskState.BEFORE_START;
-    private Boolean dataHasBeenSaved = false;
+    private boolean dataHasBeenSaved = false;
+    private byte[] inlineInput;
+    private byte[] inlineResult;
+    private transient ClassLoaderRegistry classLoaderRegistry;
+    private transient String jarHash;
+    private transient MappedDataRegistry mappedDataRegistry;
+    private transient MappedTaskData mappedData;
+
+    /**
+     * Constructor used by the deserialization
+     */
+    public Task() {
+    }
 
     /**
      * Constructor
@@ -48,6 +75,46 @@ public class Task implements Serializable {
         this.computeTask = (ITask) className.newInstance();
     }
 
+    /**
+     * Sets the computation class of the project using the class loader shared
+     * by all tasks of the project. The class loader has to be released by the
+     * releaseClass method once the task is finished
+     *
+     * @param registry registry of the class loaders
+     * @param projectJar path to the project jar
+     * @param hash SHA-256 hash of the project jar
+     * @throws IOException
+     * @throws IllegalAccessException
+     * @throws InstantiationException
+     */
+    public void setClass(ClassLoaderRegistry registry, Path projectJar, String hash) throws IOException, IllegalAccessException, InstantiationException {
+        Class<? extends ITask> compClass = registry.acquire(getProjectUID(), projectJar, hash);
+        try {
+            this.computeTask = compClass.getDeclaredConstructor().newInstance();
+        } catch (NoSuchMethodException | InvocationTargetException e) {
+            registry.release(hash);
+            InstantiationException ex = new InstantiationException("Computation class " + compClass.getName() + " couldn't be instantiated");
+            ex.initCause(e);
+            throw ex;
+        } catch (IllegalAccessException | InstantiationException | RuntimeException e) {
+            registry.release(hash);
+            throw e;
+        }
+        this.classLoaderRegistry = registry;
+        this.jarHash = hash;
+    }
+
+    /**
+     * Releases the class loader acquired by the setClass method
+     */
+    public void releaseClass() {
+        if (classLoaderRegistry != null) {
+            classLoaderRegistry.release(jarHash);
+            classLoaderRegistry = null;
+            jarHash = null;
+        }
+    }
+
     /**
      * Check if task data has been saved
      *
@@ -90,7 +157,7 @@ public class Task implements Serializable {
      * @return unique project ID
      */
     public ProjectUID getProjectUID() {
-        return new ProjectUID(unicateTaskID.getClientName(), unicateTaskID.getProjectName());
+        return unicateTaskID.getProjectUID();
     }
 
     /**
@@ -119,6 +186,246 @@ public class Task implements Serializable {
         dataHasBeenSaved = true;
     }
 
+    /**
+     * Loads the data from the channel. If the computation class doesn't
+     * implement IChannelTask, the data are stored to the temporary file first
+     *
+     * @param from channel from which the data are read
+     * @throws IOException
+     */
+    public void loadData(ReadableByteChannel from) throws IOException {
+        if (computeTask instanceof IChannelTask) {
+            ((IChannelTask) computeTask).loadData(from);
+            return;
+        }
+        Path tmp = Files.createTempFile(unicateTaskID.toString(), ".data");
+        try {
+            try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+                long position = 0;
+                long n;
+                while ((n = out.transferFrom(from, position, Long.MAX_VALUE)) > 0) {
+                    position += n;
+                }
+            }
+            computeTask.loadData(tmp);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    /**
+     * Loads the data from the memory mapped file. If the computation class
+     * doesn't implement IMappedTask, the data are loaded from the mapped file
+     * path
+     *
+     * @param from memory mapped data file
+     */
+    public void loadData(MappedTaskData from) {
+        if (computeTask instanceof IMappedTask) {
+            ((IMappedTask) computeTask).loadData(from);
+        } else {
+            computeTask.loadData(from.getPath());
+        }
+    }
+
+    /**
+     * Loads the data from the data file mapped by the registry, so the mapping
+     * is shared by all tasks reading the same file. The mapping has to be
+     * released by the releaseData method once the task is finished
+     *
+     * @param registry registry of the mapped data files
+     * @param from path to the data file
+     * @throws IOException
+     */
+    public void loadData(MappedDataRegistry registry, Path from) throws IOException {
+        MappedTaskData data = registry.acquire(from);
+        this.mappedDataRegistry = registry;
+        this.mappedData = data;
+        loadData(data);
+    }
+
+    /**
+     * Releases the mapping acquired by the loadData method
+     */
+    public void releaseData() {
+        if (mappedDataRegistry != null) {
+            mappedDataRegistry.release(mappedData);
+            mappedDataRegistry = null;
+            mappedData = null;
+        }
+    }
+
+    /**
+     * Loads the data from the buffer. The data between the position and the
+     * limit of the buffer are used
+     *
+     * @param from buffer with the data
+     * @throws IOException
+     */
+    public void loadData(final ByteBuffer from) throws IOException {
+        loadData(new ReadableByteChannel() {
+            private boolean open = true;
+
+            @Override
+            public int read(ByteBuffer dst) {
+                if (!from.hasRemaining()) {
+                    return -1;
+                }
+                int n = Math.min(dst.remaining(), from.remaining());
+                ByteBuffer slice = from.duplicate();
+                slice.limit(slice.position() + n);
+                dst.put(slice);
+                from.position(from.position() + n);
+                return n;
+            }
+
+            @Override
+            public boolean isOpen() {
+                return open;
+            }
+
+            @Override
+            public void close() {
+                open = false;
+            }
+        });
+    }
+
+    /**
+     * Saves the data to the channel. If the computation class doesn't
+     * implement IChannelTask, the data are saved to the temporary file first
+     *
+     * @param to channel to which the data are written
+     * @throws IOException
+     */
+    public void saveData(WritableByteChannel to) throws IOException {
+        if (computeTask instanceof IChannelTask) {
+            ((IChannelTask) computeTask).saveData(to);
+            dataHasBeenSaved = true;
+            return;
+        }
+        Path tmp = Files.createTempFile(unicateTaskID.toString(), ".data");
+        try {
+            computeTask.saveData(tmp);
+            try (FileChannel in = FileChannel.open(tmp, StandardOpenOption.READ)) {
+                long size = in.size();
+                long position = 0;
+                while (position < size) {
+                    position += in.transferTo(position, size - position, to);
+                }
+            }
+            dataHasBeenSaved = true;
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    /**
+     * Sets the input data carried inline in the task
+     *
+     * @param inlineInput input data or null
+     */
+    public void setInlineInput(byte[] inlineInput) {
+        this.inlineInput = inlineInput;
+    }
+
+    /**
+     * Gets the input data carried inline in the task
+     *
+     * @return input data or null if the input is not inline
+     */
+    public byte[] getInlineInput() {
+        return inlineInput;
+    }
+
+    /**
+     * Checks if the input data are carried inline in the task
+     *
+     * @return true if the input data are inline, false otherwise
+     */
+    public boolean hasInlineInput() {
+        return inlineInput != null;
+    }
+
+    /**
+     * Gets the result carried inline in the task
+     *
+     * @return result or null if the result is not inline
+     */
+    public byte[] getInlineResult() {
+        return inlineResult;
+    }
+
+    /**
+     * Checks if the result is carried inline in the task
+     *
+     * @return true if the result is inline, false otherwise
+     */
+    public boolean hasInlineResult() {
+        return inlineResult != null;
+    }
+
+    /**
+     * Loads the input data carried inline in the task. The inline input is
+     * dropped afterwards, so it is not sent back to the server
+     *
+     * @throws IOException
+     */
+    public void loadInlineData() throws IOException {
+        if (inlineInput == null) {
+            throw new IllegalStateException("Task " + unicateTaskID + " doesn't carry inline input");
+        }
+        loadData(ByteBuffer.wrap(inlineInput));
+        inlineInput = null;
+    }
+
+    /**
+     * Saves the result inline in the task if its size doesn't exceed the
+     * limit
+     *
+     * @param maxSize maximal size of the inline result in bytes
+     * @return true if the result has been saved inline, false if it is larger
+     * than the limit and has to be saved to the file
+     * @throws IOException
+     */
+    public boolean saveInlineData(final int maxSize) throws IOException {
+        final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        try {
+            saveData(Channels.newChannel(new OutputStream() {
+                @Override
+                public void write(int b) throws IOException {
+                    write(new byte[]{(byte) b}, 0, 1);
+                }
+
+                @Override
+                public void write(byte[] b, int off, int len) throws IOException {
+                    if (bos.size() + len > maxSize) {
+                        throw new InlineLimitExceededException();
+                    }
+                    bos.write(b, off, len);
+                }
+            }));
+        } catch (IOException | RuntimeException e) {
+            for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+                if (cause instanceof InlineLimitExceededException) {
+                    dataHasBeenSaved = false;
+                    return false;
+                }
+            }
+            throw e;
+        }
+        inlineResult = bos.toByteArray();
+        return true;
+    }
+
+    /**
+     * Thrown when the inline result exceeds the limit
+     */
+    private static class InlineLimitExceededException extends IOException {
+
+        private static final long serialVersionUID = 1L;
+    }
+
     /**
      * Sets the task state
      *
@@ -137,23 +444,32 @@ public class Task implements Serializable {
         return this.state;
     }
 
-    /*
-     * Method use for serializing
-     */
-    private void writeObject(ObjectOutputStream os) throws Exception {
-        os.writeObject(unicateTaskID);
-        os.writeObject(computeTask);
-        os.writeObject(state);
-        os.writeObject(dataHasBeenSaved);
+    @Override
+    public void writeExternal(ObjectOutput out) throws IOException {
+        WireFormat.writeVersion(out, WireFormat.TASK_VERSION);
+        unicateTaskID.writeExternal(out);
+        out.writeObject(computeTask);
+        out.writeByte(state.ordinal());
+        out.writeBoolean(dataHasBeenSaved);
+        WireFormat.writeBytes(out, inlineInput);
+        WireFormat.writeBytes(out, inlineResult);
     }
 
-    /*
-     * Method use for deserializing
-     */
-    private void readObject(ObjectInputStream os) throws Exception {
-        unicateTaskID = (TaskID) os.readObject();
-        computeTask = (ITask) os.readObject();
-        state = (TaskState) os.readObject();
-        dataHasBeenSaved = (Boolean) os.readObject();
+    @Override
+    public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException {
+        int version = WireFormat.readVersion(in, WireFormat.TASK_VERSION, "Task");
+        unicateTaskID = new TaskID();
+        unicateTaskID.readExternal(in);
+        computeTask = (ITask) in.readObject();
+        int ordinal = in.readUnsignedByte();
+        if (ordinal >= TaskState.values().length) {
+            throw new IOException("Unknown task state " + ordinal);
+        }
+        state = TaskState.values()[ordinal];
+        dataHasBeenSaved = in.readBoolean();
+        if (version >= 2) {
+            inlineInput = WireFormat.readBytes(in);
+            inlineResult = WireFormat.readBytes(in);
+        }
     }
 }
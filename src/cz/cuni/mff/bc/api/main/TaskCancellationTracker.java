@@ -0,0 +1,107 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package cz.cuni.mff.bc.api.main;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Task event listener which remembers the obsolete tasks and projects. The
+ * worker checks whether the task is obsolete before and during its
+ * calculation. Tasks have to be forgotten once their calculation is finished.
+ * Projects are forgotten when they are uploaded again, so a new project with
+ * the same unique ID is not considered obsolete
+ *
+ * @author Jakub Hava
+ */
+public class TaskCancellationTracker implements ITaskEventListener {
+
+    private final Set<TaskID> cancelledTasks = Collections.newSetFromMap(new ConcurrentHashMap<TaskID, Boolean>());
+    private final Set<ProjectUID> inactiveProjects = Collections.newSetFromMap(new ConcurrentHashMap<ProjectUID, Boolean>());
+
+    @Override
+    public void taskCancelled(TaskID taskID) {
+        cancelledTasks.add(taskID);
+    }
+
+    @Override
+    public void projectCancelled(ProjectUID projectUID) {
+        inactiveProjects.add(projectUID);
+        forgetTasks(projectUID);
+    }
+
+    @Override
+    public void projectPaused(ProjectUID projectUID) {
+        inactiveProjects.add(projectUID);
+    }
+
+    @Override
+    public void projectResumed(ProjectUID projectUID) {
+        inactiveProjects.remove(projectUID);
+    }
+
+    @Override
+    public void projectCorrupted(ProjectUID projectUID) {
+        inactiveProjects.add(projectUID);
+        forgetTasks(projectUID);
+    }
+
+    @Override
+    public void projectStarted(ProjectUID projectUID) {
+        forgetProject(projectUID);
+    }
+
+    /**
+     * Checks if the task is supposed to be terminated
+     *
+     * @param taskID unique ID of the task
+     * @return true if the task or its project has been cancelled, paused or
+     * marked as corrupted, false otherwise
+     */
+    public boolean isObsolete(TaskID taskID) {
+        return cancelledTasks.contains(taskID) || inactiveProjects.contains(taskID.getProjectUID());
+    }
+
+    /**
+     * Checks if the tasks of the project are supposed to be terminated
+     *
+     * @param projectUID unique ID of the project
+     * @return true if the project has been cancelled, paused or marked as
+     * corrupted, false otherwise
+     */
+    public boolean isObsolete(ProjectUID projectUID) {
+        return inactiveProjects.contains(projectUID);
+    }
+
+    /**
+     * Forgets the task once its calculation has been finished
+     *
+     * @param taskID unique ID of the task
+     */
+    public void forget(TaskID taskID) {
+        cancelledTasks.remove(taskID);
+    }
+
+    /**
+     * Forgets the project and its cancelled tasks, so the tasks of the project
+     * are not considered obsolete anymore
+     *
+     * @param projectUID unique ID of the project
+     */
+    public void forgetProject(ProjectUID projectUID) {
+        inactiveProjects.remove(projectUID);
+        forgetTasks(projectUID);
+    }
+
+    private void forgetTasks(ProjectUID projectUID) {
+        for (Iterator<TaskID> it = cancelledTasks.iterator(); it.hasNext();) {
+            if (it.next().getProjectUID().equals(projectUID)) {
+                it.remove();
+            }
+        }
+    }
+}
@@ -0,0 +1,34 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package cz.cuni.mff.bc.api.main;
+
+/**
+ * Handles the input and output phases of the tasks calculated by the
+ * pipelined task runner. Both methods are called outside of the calculation
+ * thread, so the network and disk operations overlap with the calculation of
+ * other tasks
+ *
+ * @author Jakub Hava
+ */
+public interface TaskHandler {
+
+    /**
+     * Prepares the task for the calculation, for example downloads the
+     * project jar, sets the computation class and loads the data
+     *
+     * @param task task fetched from the server
+     * @throws Exception
+     */
+    public void prepare(Task task) throws Exception;
+
+    /**
+     * Finishes the calculated task before it is sent to the server, for
+     * example saves the data
+     *
+     * @param task calculated task
+     * @throws Exception
+     */
+    public void finish(Task task) throws Exception;
+}
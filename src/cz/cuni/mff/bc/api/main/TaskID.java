@@ -4,23 +4,38 @@
  */
 package cz.cuni.mff.bc.api.main;
 
-import java.io.Serializable;
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
 import java.util.Objects;
 
 /**
- * Represents unique task ID
+ * Represents unique task ID. Task IDs are serialized in the compact versioned
+ * format, the integers are written as variable length integers and the client
+ * and project names are written only once per serialization session
  *
  * @author Jakub Hava
  */
-public class TaskID implements Serializable {
+public class TaskID implements Externalizable {
 
+    private static final long serialVersionUID = 1L;
     private int cores;
     private int memory;
     private int time;
-    private final int priority;
-    private final String projectName;
-    private final String clientName;
-    private final String taskName;
+    private int priority;
+    private String projectName;
+    private String clientName;
+    private String taskName;
+    private transient int hash;
+    private transient volatile int handle = -1;
+    private transient ProjectUID projectUID;
+
+    /**
+     * Constructor used by the deserialization
+     */
+    public TaskID() {
+    }
 
     /**
      * Constructor
@@ -121,7 +136,12 @@ public class TaskID implements Serializable {
      * @return project unique ID
      */
     public ProjectUID getProjectUID() {
-        return new ProjectUID(clientName, projectName);
+        ProjectUID uid = projectUID;
+        if (uid == null) {
+            uid = IdentityRegistry.getDefault().getProjectUID(clientName, projectName);
+            projectUID = uid;
+        }
+        return uid;
     }
 
     /**
@@ -142,6 +162,30 @@ public class TaskID implements Serializable {
         return taskName;
     }
 
+    @Override
+    public void writeExternal(ObjectOutput out) throws IOException {
+        WireFormat.writeVersion(out, WireFormat.TASK_ID_VERSION);
+        WireFormat.writeSharedString(out, clientName);
+        WireFormat.writeSharedString(out, projectName);
+        out.writeUTF(taskName);
+        WireFormat.writeVarInt(out, priority);
+        WireFormat.writeVarInt(out, cores);
+        WireFormat.writeVarInt(out, memory);
+        WireFormat.writeVarInt(out, time);
+    }
+
+    @Override
+    public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException {
+        WireFormat.readVersion(in, WireFormat.TASK_ID_VERSION, "TaskID");
+        clientName = WireFormat.readSharedString(in);
+        projectName = WireFormat.readSharedString(in);
+        taskName = in.readUTF();
+        priority = WireFormat.readVarInt(in);
+        cores = WireFormat.readVarInt(in);
+        memory = WireFormat.readVarInt(in);
+        time = WireFormat.readVarInt(in);
+    }
+
     @Override
     public String toString() {
         return clientName + "_" + projectName + "_" + taskName;
@@ -156,6 +200,9 @@ public class TaskID implements Serializable {
             return false;
         } else {
             TaskID ID = (TaskID) other;
+            if (this.hashCode() != ID.hashCode()) {
+                return false;
+            }
             if (this.clientName.equals(ID.getClientName()) && this.projectName.equals(ID.getProjectName()) && this.taskName.equals(ID.getTaskName())) {
                 return true;
             } else {
@@ -166,10 +213,32 @@ public class TaskID implements Serializable {
 
     @Override
     public int hashCode() {
-        int hash = 3;
-        hash = 53 * hash + Objects.hashCode(this.projectName);
-        hash = 53 * hash + Objects.hashCode(this.clientName);
-        hash = 53 * hash + Objects.hashCode(this.taskName);
-        return hash;
+        int h = hash;
+        if (h == 0) {
+            h = 3;
+            h = 53 * h + Objects.hashCode(this.projectName);
+            h = 53 * h + Objects.hashCode(this.clientName);
+            h = 53 * h + Objects.hashCode(this.taskName);
+            hash = h;
+        }
+        return h;
+    }
+
+    /**
+     * Gets the handle assigned by the identity registry
+     *
+     * @return handle or -1 if the task ID hasn't been interned
+     */
+    int getHandle() {
+        return handle;
+    }
+
+    /**
+     * Sets the handle assigned by the identity registry
+     *
+     * @param handle handle of the task ID
+     */
+    void setHandle(int handle) {
+        this.handle = handle;
     }
 }
@@ -0,0 +1,192 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package cz.cuni.mff.bc.api.main;
+
+import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Sends completed tasks to the server asynchronously. Tasks are collected in
+ * bounded buffer and sent in batches once the batch is full or the flush
+ * interval has elapsed. If the connection to the server is lost, the batch is
+ * kept and sent again later, so the completed tasks are not lost. The batch is
+ * sent again even if the failed call reached the server, so the server may
+ * receive the same result twice and has to ignore the duplicates. If the
+ * buffer is full, submitting new tasks blocks until there is free space. When
+ * the submitter is interrupted, it tries to send the remaining tasks once.
+ * Tasks which couldn't be sent are kept and the caller can get them by the
+ * getUnsentTasks method and send them later
+ *
+ * @author Jakub Hava
+ */
+public class TaskSubmitter implements Runnable {
+
+    private static final Logger LOG = Logger.getLogger(TaskSubmitter.class.getName());
+    private final IServer remoteService;
+    private final String clientName;
+    private final int batchSize;
+    private final long flushInterval;
+    private final BlockingQueue<Task> buffer;
+    private final ArrayList<Task> pending = new ArrayList<>();
+    private final ArrayList<TaskID> rejected = new ArrayList<>();
+    private volatile boolean closed = false;
+    private volatile boolean finished = false;
+
+    /**
+     * Constructor
+     *
+     * @param remoteService remote interface
+     * @param clientName client's name
+     * @param batchSize maximal number of tasks sent in one call
+     * @param flushInterval maximal time in milliseconds for which the completed
+     * task waits in the buffer
+     * @param capacity capacity of the buffer
+     */
+    public TaskSubmitter(IServer remoteService, String clientName, int batchSize, long flushInterval, int capacity) {
+        if (batchSize <= 0 || flushInterval <= 0 || capacity <= 0) {
+            throw new IllegalArgumentException("Batch size, flush interval and capacity have to be higher then 0");
+        }
+        this.remoteService = remoteService;
+        this.clientName = clientName;
+        this.batchSize = batchSize;
+        this.flushInterval = flushInterval;
+        this.buffer = new ArrayBlockingQueue<>(capacity);
+    }
+
+    /**
+     * Puts the completed task into the buffer. Blocks if the buffer is full
+     *
+     * @param task completed task
+     * @throws InterruptedException
+     */
+    public void submit(Task task) throws InterruptedException {
+        if (closed) {
+            throw new IllegalStateException("Task submitter has been already closed");
+        }
+        buffer.put(task);
+    }
+
+    /**
+     * Gets the number of tasks which haven't been acknowledged by the server
+     * yet
+     *
+     * @return number of tasks waiting for sending
+     */
+    public synchronized int getPendingCount() {
+        return buffer.size() + pending.size();
+    }
+
+    /**
+     * Gets the completed tasks which haven't been acknowledged by the server
+     * yet. It should be used once the submitter has finished to keep the
+     * results which couldn't be sent
+     *
+     * @return list of unsent tasks
+     */
+    public synchronized ArrayList<Task> getUnsentTasks() {
+        ArrayList<Task> unsent = new ArrayList<>(pending);
+        unsent.addAll(buffer);
+        return unsent;
+    }
+
+    /**
+     * Gets the IDs of tasks which have been rejected by the server
+     *
+     * @return list of rejected tasks
+     */
+    public synchronized ArrayList<TaskID> getRejectedTasks() {
+        return new ArrayList<>(rejected);
+    }
+
+    /**
+     * Stops accepting new tasks. Tasks which are already in the buffer are
+     * still sent to the server
+     */
+    public void close() {
+        closed = true;
+    }
+
+    /**
+     * Checks if all tasks have been sent and the submitter has been closed
+     *
+     * @return true if the submitter has finished, false otherwise
+     */
+    public boolean hasFinished() {
+        return finished;
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (!closed || getPendingCount() > 0) {
+                fillBatch();
+                if (!send()) {
+                    Thread.sleep(flushInterval);
+                }
+            }
+        } catch (InterruptedException e) {
+            flushOnInterrupt();
+            Thread.currentThread().interrupt();
+        } finally {
+            finished = true;
+        }
+    }
+
+    private void flushOnInterrupt() {
+        synchronized (this) {
+            buffer.drainTo(pending);
+        }
+        if (!send()) {
+            LOG.log(Level.WARNING, "{0} completed tasks couldn''t be sent, they are kept as unsent", getPendingCount());
+        }
+    }
+
+    private void fillBatch() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + flushInterval;
+        while (pending.size() < batchSize) {
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0) {
+                break;
+            }
+            Task task = buffer.poll(remaining, TimeUnit.MILLISECONDS);
+            if (task == null) {
+                break;
+            }
+            synchronized (this) {
+                pending.add(task);
+            }
+        }
+    }
+
+    private boolean send() {
+        ArrayList<Task> batch;
+        synchronized (this) {
+            if (pending.isEmpty()) {
+                return true;
+            }
+            batch = new ArrayList<>(pending);
+        }
+        try {
+            ArrayList<Boolean> acks = remoteService.saveCompletedTasks(clientName, batch);
+            synchronized (this) {
+                for (int i = 0; i < batch.size(); i++) {
+                    if (acks == null || i >= acks.size() || !acks.get(i)) {
+                        rejected.add(batch.get(i).getUnicateID());
+                    }
+                }
+                pending.subList(0, batch.size()).clear();
+            }
+            return true;
+        } catch (RemoteException e) {
+            LOG.log(Level.FINE, "Completed tasks couldn''t be sent, batch will be sent again: {0}", e.getMessage());
+            return false;
+        }
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package cz.cuni.mff.bc.api.main;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+
+/**
+ * Change of the tasks calculated on the client since the epoch acknowledged
+ * by the server. Full delta contains all tasks currently calculated on the
+ * client and is used to resynchronize the client with the server
+ *
+ * @author Jakub Hava
+ */
+public class TasksDelta implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+    private final long baseEpoch;
+    private final boolean full;
+    private final ArrayList<TaskID> added;
+    private final ArrayList<TaskID> removed;
+
+    /**
+     * Constructor
+     *
+     * @param baseEpoch last epoch acknowledged by the server
+     * @param full true if the added tasks are all tasks calculated on the
+     * client
+     * @param added tasks which started to be calculated since the base epoch
+     * @param removed tasks which stopped to be calculated since the base epoch
+     */
+    public TasksDelta(long baseEpoch, boolean full, ArrayList<TaskID> added, ArrayList<TaskID> removed) {
+        this.baseEpoch = baseEpoch;
+        this.full = full;
+        this.added = added;
+        this.removed = removed;
+    }
+
+    /**
+     * Gets the last epoch acknowledged by the server
+     *
+     * @return base epoch
+     */
+    public long getBaseEpoch() {
+        return baseEpoch;
+    }
+
+    /**
+     * Checks if the delta contains all tasks calculated on the client
+     *
+     * @return true if this is the full resynchronization, false otherwise
+     */
+    public boolean isFull() {
+        return full;
+    }
+
+    /**
+     * Gets the tasks which started to be calculated since the base epoch
+     *
+     * @return added tasks
+     */
+    public ArrayList<TaskID> getAdded() {
+        return added;
+    }
+
+    /**
+     * Gets the tasks which stopped to be calculated since the base epoch
+     *
+     * @return removed tasks
+     */
+    public ArrayList<TaskID> getRemoved() {
+        return removed;
+    }
+}
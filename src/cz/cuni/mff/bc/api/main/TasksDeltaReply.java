@@ -0,0 +1,63 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package cz.cuni.mff.bc.api.main;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+
+/**
+ * Reply of the server to the tasks delta
+ *
+ * @author Jakub Hava
+ */
+public class TasksDeltaReply implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+    private final long epoch;
+    private final boolean resyncRequired;
+    private final ArrayList<TaskID> toTerminate;
+
+    /**
+     * Constructor
+     *
+     * @param epoch epoch acknowledged by the server
+     * @param resyncRequired true if the server couldn't apply the delta and
+     * the client has to send the full delta
+     * @param toTerminate tasks which calculation is supposed to be terminated
+     * and which haven't been sent to the client yet
+     */
+    public TasksDeltaReply(long epoch, boolean resyncRequired, ArrayList<TaskID> toTerminate) {
+        this.epoch = epoch;
+        this.resyncRequired = resyncRequired;
+        this.toTerminate = toTerminate;
+    }
+
+    /**
+     * Gets the epoch acknowledged by the server
+     *
+     * @return acknowledged epoch
+     */
+    public long getEpoch() {
+        return epoch;
+    }
+
+    /**
+     * Checks if the client has to send the full delta
+     *
+     * @return true if the resynchronization is required, false otherwise
+     */
+    public boolean isResyncRequired() {
+        return resyncRequired;
+    }
+
+    /**
+     * Gets the tasks which calculation is supposed to be terminated
+     *
+     * @return tasks to terminate
+     */
+    public ArrayList<TaskID> getToTerminate() {
+        return toTerminate;
+    }
+}
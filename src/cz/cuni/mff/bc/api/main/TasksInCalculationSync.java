@@ -0,0 +1,90 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package cz.cuni.mff.bc.api.main;
+
+import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+
+/**
+ * Synchronizes the tasks calculated on the client with the server. Only the
+ * tasks added or removed since the last epoch acknowledged by the server are
+ * sent and the server replies only with the new tasks to terminate. If the
+ * server can't apply the delta, for example after its restart or when the
+ * previous reply has been lost, all tasks are sent again
+ *
+ * @author Jakub Hava
+ */
+public class TasksInCalculationSync {
+
+    private final IServer remoteService;
+    private final String clientName;
+    private final HashSet<TaskID> acknowledged = new HashSet<>();
+    private long epoch = 0;
+    private boolean resyncRequired = true;
+
+    /**
+     * Constructor
+     *
+     * @param remoteService remote interface implementation
+     * @param clientName client's name
+     */
+    public TasksInCalculationSync(IServer remoteService, String clientName) {
+        this.remoteService = remoteService;
+        this.clientName = clientName;
+    }
+
+    /**
+     * Sends the change of the tasks currently calculated on the client to the
+     * server
+     *
+     * @param tasksInCalculation tasks currently calculated on the client
+     * @return the list of task which calculation is supposed to be terminated
+     * @throws RemoteException
+     */
+    public synchronized ArrayList<TaskID> synchronize(Collection<TaskID> tasksInCalculation) throws RemoteException {
+        HashSet<TaskID> current = new HashSet<>(tasksInCalculation);
+        TasksDeltaReply reply = remoteService.sendTasksDelta(clientName, createDelta(current));
+        if (reply.isResyncRequired() && !resyncRequired) {
+            resyncRequired = true;
+            reply = remoteService.sendTasksDelta(clientName, createDelta(current));
+        }
+        if (reply.isResyncRequired()) {
+            throw new RemoteException("Server refused to synchronize tasks in calculation of client " + clientName);
+        }
+        epoch = reply.getEpoch();
+        resyncRequired = false;
+        acknowledged.clear();
+        acknowledged.addAll(current);
+        return reply.getToTerminate() == null ? new ArrayList<TaskID>() : reply.getToTerminate();
+    }
+
+    /**
+     * Forces the full resynchronization during the next synchronization
+     */
+    public synchronized void reset() {
+        resyncRequired = true;
+    }
+
+    private TasksDelta createDelta(HashSet<TaskID> current) {
+        if (resyncRequired) {
+            return new TasksDelta(epoch, true, new ArrayList<>(current), new ArrayList<TaskID>());
+        }
+        ArrayList<TaskID> added = new ArrayList<>();
+        for (TaskID id : current) {
+            if (!acknowledged.contains(id)) {
+                added.add(id);
+            }
+        }
+        ArrayList<TaskID> removed = new ArrayList<>();
+        for (TaskID id : acknowledged) {
+            if (!current.contains(id)) {
+                removed.add(id);
+            }
+        }
+        return new TasksDelta(epoch, false, added, removed);
+    }
+}
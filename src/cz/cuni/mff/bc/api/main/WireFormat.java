@@ -0,0 +1,154 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package cz.cuni.mff.bc.api.main;
+
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+
+/**
+ * Helper methods for the compact serialization of tasks. Integers are written
+ * as variable length integers and the names shared by many tasks are written
+ * as interned strings, so the object stream writes each of them only once and
+ * refers to them by the handle afterwards
+ *
+ * @author Jakub Hava
+ */
+class WireFormat {
+
+    /**
+     * Current version of the task format, version 2 added the inline data
+     */
+    static final int TASK_VERSION = 2;
+    /**
+     * Current version of the task ID format
+     */
+    static final int TASK_ID_VERSION = 1;
+
+    private WireFormat() {
+    }
+
+    /**
+     * Writes the version of the format
+     *
+     * @param out object output
+     * @param version version of the format of the serialized type
+     * @throws IOException
+     */
+    static void writeVersion(ObjectOutput out, int version) throws IOException {
+        out.writeByte(version);
+    }
+
+    /**
+     * Reads and checks the version of the format. Older versions are accepted
+     *
+     * @param in object input
+     * @param currentVersion current version of the format of the deserialized
+     * type
+     * @param type name of the deserialized type used in the error message
+     * @return read version
+     * @throws IOException
+     */
+    static int readVersion(ObjectInput in, int currentVersion, String type) throws IOException {
+        int version = in.readUnsignedByte();
+        if (version < 1 || version > currentVersion) {
+            throw new IOException("Unsupported format version " + version + " of " + type);
+        }
+        return version;
+    }
+
+    /**
+     * Writes the non-negative integer as the variable length integer. Seven
+     * bits are written in each byte, the highest bit marks that another byte
+     * follows
+     *
+     * @param out object output
+     * @param value value to be written
+     * @throws IOException
+     */
+    static void writeVarInt(ObjectOutput out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    /**
+     * Reads the variable length integer
+     *
+     * @param in object input
+     * @return read value
+     * @throws IOException
+     */
+    static int readVarInt(ObjectInput in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed variable length integer");
+    }
+
+    /**
+     * Writes the byte array which can be null
+     *
+     * @param out object output
+     * @param value array to be written
+     * @throws IOException
+     */
+    static void writeBytes(ObjectOutput out, byte[] value) throws IOException {
+        if (value == null) {
+            writeVarInt(out, 0);
+        } else {
+            writeVarInt(out, value.length + 1);
+            out.write(value);
+        }
+    }
+
+    /**
+     * Reads the byte array written by writeBytes method
+     *
+     * @param in object input
+     * @return read array or null
+     * @throws IOException
+     */
+    static byte[] readBytes(ObjectInput in) throws IOException {
+        int length = readVarInt(in);
+        if (length == 0) {
+            return null;
+        }
+        byte[] value = new byte[length - 1];
+        in.readFully(value);
+        return value;
+    }
+
+    /**
+     * Writes the string which is shared by many objects. The string is
+     * interned, so the object stream writes it only once per session
+     *
+     * @param out object output
+     * @param value string to be written
+     * @throws IOException
+     */
+    static void writeSharedString(ObjectOutput out, String value) throws IOException {
+        out.writeObject(value == null ? null : value.intern());
+    }
+
+    /**
+     * Reads the string written by writeSharedString method
+     *
+     * @param in object input
+     * @return read string
+     * @throws IOException
+     * @throws ClassNotFoundException
+     */
+    static String readSharedString(ObjectInput in) throws IOException, ClassNotFoundException {
+        return (String) in.readObject();
+    }
+}
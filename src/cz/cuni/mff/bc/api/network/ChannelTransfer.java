@@ -0,0 +1,85 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package cz.cuni.mff.bc.api.network;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Transfers data between files and pipes in large chunks. Pipes are only
+ * streams, so the data can't be moved without copying. Each chunk is read to
+ * one reusable buffer of the thread and written from it at once, so the data
+ * are not split to small writes and no temporary buffers are allocated
+ *
+ * @author Jakub Hava
+ */
+public class ChannelTransfer {
+
+    /**
+     * Maximal number of bytes transferred in one chunk
+     */
+    public static final int CHUNK_SIZE = 1024 * 1024;
+    private static final ThreadLocal<ByteBuffer> buffers = new ThreadLocal<ByteBuffer>() {
+        @Override
+        protected ByteBuffer initialValue() {
+            return ByteBuffer.allocate(CHUNK_SIZE);
+        }
+    };
+
+    /**
+     * Transfers one chunk from the file to the stream
+     *
+     * @param from source file channel
+     * @param position position in the source file
+     * @param count maximal number of bytes to be transferred
+     * @param to target stream
+     * @return number of transferred bytes, 0 if the end of the file has been
+     * reached
+     * @throws IOException
+     */
+    public static long transferChunk(FileChannel from, long position, long count, OutputStream to) throws IOException {
+        ByteBuffer buffer = buffers.get();
+        buffer.clear();
+        buffer.limit((int) Math.min(count, CHUNK_SIZE));
+        while (buffer.hasRemaining()) {
+            if (from.read(buffer, position + buffer.position()) < 0) {
+                break;
+            }
+        }
+        to.write(buffer.array(), 0, buffer.position());
+        return buffer.position();
+    }
+
+    /**
+     * Transfers one chunk from the stream to the file
+     *
+     * @param from source stream
+     * @param to target file channel
+     * @param position position in the target file
+     * @param count maximal number of bytes to be transferred
+     * @return number of transferred bytes, 0 if the end of the source stream
+     * has been reached
+     * @throws IOException
+     */
+    public static long transferChunk(InputStream from, FileChannel to, long position, long count) throws IOException {
+        ByteBuffer buffer = buffers.get();
+        byte[] array = buffer.array();
+        int limit = (int) Math.min(count, CHUNK_SIZE);
+        int filled = 0;
+        int n;
+        while (filled < limit && (n = from.read(array, filled, limit - filled)) > 0) {
+            filled += n;
+        }
+        buffer.clear();
+        buffer.limit(filled);
+        while (buffer.hasRemaining()) {
+            to.write(buffer, position + buffer.position());
+        }
+        return filled;
+    }
+}
@@ -0,0 +1,189 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package cz.cuni.mff.bc.api.network;
+
+import cz.cuni.mff.bc.api.main.IServer;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+
+/**
+ * Selects the transfer codec according to the measured throughput. The link
+ * throughput is measured during the transfers, the compression ratio and speed
+ * of the codecs are measured on the samples of transferred data. The codec
+ * with the shortest estimated transfer time is selected, so the data are not
+ * compressed on fast networks and heavily compressed on slow ones. Data are
+ * not compressed until the codecs have been measured on some data
+ *
+ * @author Jakub Hava
+ */
+public class CodecSelector {
+
+    private static final double DEFAULT_LINK_RATE = 10 * 1024 * 1024;
+    private static final double SMOOTHING = 0.5;
+    private static final double MAX_ENCODING_SHARE = 0.5;
+    private static final int SAMPLE_SIZE = 256 * 1024;
+    private double linkRate = DEFAULT_LINK_RATE;
+    private boolean measured = false;
+    private final EnumMap<TransferCodec, Double> ratios = new EnumMap<>(TransferCodec.class);
+    private final EnumMap<TransferCodec, Double> speeds = new EnumMap<>(TransferCodec.class);
+
+    /**
+     * Constructor
+     */
+    public CodecSelector() {
+        ratios.put(TransferCodec.NONE, 1.0);
+        speeds.put(TransferCodec.NONE, Double.POSITIVE_INFINITY);
+        ratios.put(TransferCodec.LZ, 0.6);
+        speeds.put(TransferCodec.LZ, 200.0 * 1024 * 1024);
+        ratios.put(TransferCodec.DEFLATE, 0.4);
+        speeds.put(TransferCodec.DEFLATE, 30.0 * 1024 * 1024);
+    }
+
+    /**
+     * Records the finished transfer. It is used to measure the link throughput
+     * and the compression ratio of the codec. Time spent by encoding is not
+     * counted to the link throughput and the throughput is not measured at all
+     * if the codec was the bottleneck of the transfer
+     *
+     * @param codec codec used during the transfer
+     * @param rawBytes number of transferred bytes before encoding
+     * @param wireBytes number of bytes sent through the pipe
+     * @param millis time spent waiting for the pipe in milliseconds
+     * @param encodeMillis part of the time spent by encoding on the other side
+     * of the pipe in milliseconds, -1 to estimate it from the codec speed
+     */
+    public synchronized void recordTransfer(TransferCodec codec, long rawBytes, long wireBytes, long millis, long encodeMillis) {
+        double encoding = encodeMillis;
+        if (encodeMillis < 0) {
+            encoding = codec == TransferCodec.NONE ? 0 : rawBytes * 1000.0 / speeds.get(codec);
+        }
+        if (millis > 0 && wireBytes > 0 && encoding < millis * MAX_ENCODING_SHARE) {
+            linkRate = smooth(linkRate, wireBytes * 1000.0 / (millis - encoding));
+        }
+        if (codec != TransferCodec.NONE && rawBytes > 0) {
+            ratios.put(codec, smooth(ratios.get(codec), wireBytes / (double) rawBytes));
+            measured = true;
+        }
+    }
+
+    /**
+     * Measures the compression ratio and speed of all codecs on the sample of
+     * the data
+     *
+     * @param sample sample of the data
+     * @param length length of the sample
+     */
+    public synchronized void measure(byte[] sample, int length) {
+        if (length <= 0) {
+            return;
+        }
+        for (TransferCodec codec : TransferCodec.values()) {
+            if (codec == TransferCodec.NONE) {
+                continue;
+            }
+            ByteArrayOutputStream bos = new ByteArrayOutputStream(length);
+            long start = System.nanoTime();
+            try (OutputStream out = codec.encode(bos)) {
+                out.write(sample, 0, length);
+            } catch (IOException e) {
+                continue;
+            }
+            long nanos = Math.max(1, System.nanoTime() - start);
+            ratios.put(codec, bos.size() / (double) length);
+            speeds.put(codec, length * 1e9 / nanos);
+            measured = true;
+        }
+    }
+
+    /**
+     * Gets the measured link throughput
+     *
+     * @return link throughput in bytes per second
+     */
+    public synchronized double getLinkRate() {
+        return linkRate;
+    }
+
+    /**
+     * Selects the codec with the shortest estimated transfer time. No codec is
+     * selected if the codecs haven't been measured yet
+     *
+     * @param supported names of the codecs supported by the server
+     * @return selected codec
+     */
+    public synchronized TransferCodec select(Collection<String> supported) {
+        TransferCodec best = TransferCodec.NONE;
+        if (!measured) {
+            return best;
+        }
+        double bestTime = estimate(best);
+        for (TransferCodec codec : TransferCodec.values()) {
+            if (supported != null && supported.contains(codec.name())) {
+                double time = estimate(codec);
+                if (time < bestTime) {
+                    best = codec;
+                    bestTime = time;
+                }
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Negotiates the codec with the server. If the preferred codec is set, it
+     * is used if the server supports it, otherwise the codec is selected
+     * automatically. Data are sent without compression if the server doesn't
+     * support any codec
+     *
+     * @param remoteService remote interface implementation
+     * @param preferred preferred codec or null for automatic selection
+     * @param sample path to the file which is used to measure the codecs, can
+     * be null
+     * @return negotiated codec
+     * @throws RemoteException
+     */
+    public TransferCodec negotiate(IServer remoteService, TransferCodec preferred, Path sample) throws RemoteException {
+        if (preferred == TransferCodec.NONE) {
+            return TransferCodec.NONE;
+        }
+        ArrayList<String> supported = remoteService.getSupportedCodecs();
+        if (preferred != null) {
+            if (supported != null && supported.contains(preferred.name())) {
+                return preferred;
+            } else {
+                return TransferCodec.NONE;
+            }
+        }
+        if (sample != null) {
+            byte[] buffer = new byte[SAMPLE_SIZE];
+            int length = 0;
+            try (InputStream in = Files.newInputStream(sample)) {
+                int n;
+                while (length < buffer.length && (n = in.read(buffer, length, buffer.length - length)) > 0) {
+                    length += n;
+                }
+            } catch (IOException e) {
+            }
+            measure(buffer, length);
+        }
+        return select(supported);
+    }
+
+    private double estimate(TransferCodec codec) {
+        return ratios.get(codec) / linkRate + 1 / speeds.get(codec);
+    }
+
+    private static double smooth(double previous, double measured) {
+        return SMOOTHING * previous + (1 - SMOOTHING) * measured;
+    }
+}
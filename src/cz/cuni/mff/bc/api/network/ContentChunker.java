@@ -0,0 +1,144 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package cz.cuni.mff.bc.api.network;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Random;
+
+/**
+ * Splits files into content defined chunks. The chunk boundaries are found by
+ * the rolling gear hash, so a small change of the file changes only the chunks
+ * around the change. Each chunk is identified by its SHA-256 hash
+ *
+ * @author Jakub Hava
+ */
+public class ContentChunker {
+
+    /**
+     * Minimal size of the chunk in bytes
+     */
+    public static final int MIN_CHUNK_SIZE = 256 * 1024;
+    /**
+     * Maximal size of the chunk in bytes
+     */
+    public static final int MAX_CHUNK_SIZE = 4 * 1024 * 1024;
+    private static final long MASK = (1L << 20) - 1;
+    private static final long[] GEAR = new long[256];
+
+    static {
+        Random random = new Random(0x44435348L);
+        for (int i = 0; i < GEAR.length; i++) {
+            GEAR[i] = random.nextLong();
+        }
+    }
+
+    /**
+     * Chunk of the file
+     */
+    public static class Chunk {
+
+        private final long offset;
+        private final int length;
+        private final String hash;
+
+        /**
+         * Constructor
+         *
+         * @param offset position of the chunk in the file
+         * @param length length of the chunk in bytes
+         * @param hash SHA-256 hash of the chunk
+         */
+        public Chunk(long offset, int length, String hash) {
+            this.offset = offset;
+            this.length = length;
+            this.hash = hash;
+        }
+
+        /**
+         * Gets the position of the chunk in the file
+         *
+         * @return position of the chunk in the file
+         */
+        public long getOffset() {
+            return offset;
+        }
+
+        /**
+         * Gets the length of the chunk
+         *
+         * @return length of the chunk in bytes
+         */
+        public int getLength() {
+            return length;
+        }
+
+        /**
+         * Gets the hash of the chunk
+         *
+         * @return hexadecimal SHA-256 hash of the chunk
+         */
+        public String getHash() {
+            return hash;
+        }
+    }
+
+    /**
+     * Splits the file into chunks
+     *
+     * @param file path to the file
+     * @return list of chunks in the order in which they appear in the file
+     * @throws IOException
+     */
+    public static ArrayList<Chunk> split(Path file) throws IOException {
+        ArrayList<Chunk> chunks = new ArrayList<>();
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException("SHA-256 algorithm is not available", e);
+        }
+        byte[] chunk = new byte[MAX_CHUNK_SIZE];
+        byte[] buffer = new byte[65536];
+        int length = 0;
+        long offset = 0;
+        long hash = 0;
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(file), 65536)) {
+            int n;
+            while ((n = in.read(buffer)) > 0) {
+                for (int i = 0; i < n; i++) {
+                    chunk[length++] = buffer[i];
+                    hash = (hash << 1) + GEAR[buffer[i] & 0xff];
+                    if ((length >= MIN_CHUNK_SIZE && (hash & MASK) == 0) || length == MAX_CHUNK_SIZE) {
+                        chunks.add(new Chunk(offset, length, toHex(digest, chunk, length)));
+                        offset += length;
+                        length = 0;
+                        hash = 0;
+                    }
+                }
+            }
+        }
+        if (length > 0) {
+            chunks.add(new Chunk(offset, length, toHex(digest, chunk, length)));
+        }
+        return chunks;
+    }
+
+    private static String toHex(MessageDigest digest, byte[] data, int length) {
+        digest.reset();
+        digest.update(data, 0, length);
+        StringBuilder sb = new StringBuilder();
+        for (byte b : digest.digest()) {
+            sb.append(String.format("%02x", b));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package cz.cuni.mff.bc.api.network;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Output stream which counts the written bytes and the time spent writing
+ * them to the underlying stream
+ *
+ * @author Jakub Hava
+ */
+public class CountingOutputStream extends FilterOutputStream {
+
+    private long count = 0;
+    private long nanos = 0;
+
+    /**
+     * Constructor
+     *
+     * @param out underlying output stream
+     */
+    public CountingOutputStream(OutputStream out) {
+        super(out);
+    }
+
+    /**
+     * Gets the number of written bytes
+     *
+     * @return number of written bytes
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Gets the time spent writing to the underlying stream
+     *
+     * @return time in nanoseconds
+     */
+    public long getNanos() {
+        return nanos;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        long start = System.nanoTime();
+        out.write(b);
+        nanos += System.nanoTime() - start;
+        count++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        long start = System.nanoTime();
+        out.write(b, off, len);
+        nanos += System.nanoTime() - start;
+        count += len;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        long start = System.nanoTime();
+        out.flush();
+        nanos += System.nanoTime() - start;
+    }
+}
@@ -0,0 +1,195 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package cz.cuni.mff.bc.api.network;
+
+import cz.cuni.mff.bc.api.main.IServer;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import org.cojen.dirmi.Pipe;
+
+/**
+ * Class used to upload projects to the server in delta mode. The project jar
+ * and data are split into content defined chunks and only the chunks which are
+ * not already stored on the server are uploaded. The server then assembles the
+ * project from the chunks, so uploading the project with slightly changed data
+ * transfers only the changed parts of the files
+ *
+ * @author Jakub Hava
+ */
+public class DeltaUploader implements IUpDown {
+
+    private boolean hasStarted = false;
+    private boolean hasCompleted = false;
+    private final IServer remoteService;
+    private final Path projectJar;
+    private final Path projectData;
+    private final String clientName;
+    private final String projectName;
+    private final int priority;
+    private final int cores;
+    private final int memory;
+    private final int time;
+    private int uploadProgress = 0;
+    private long bytesSent = 0;
+    private final TransferNotifier notifier = new TransferNotifier();
+
+    /**
+     * Constructor
+     *
+     * @param remoteService remote interface implementation
+     * @param projectJar path to project jar
+     * @param projectData path to project data
+     * @param clientName client's name
+     * @param projectName project name
+     * @param priority project priority
+     * @param cores number of cores needed by task
+     * @param memory amount of memory needed by task
+     * @param time average time of task to be calculated
+     */
+    public DeltaUploader(IServer remoteService, Path projectJar, Path projectData,
+            String clientName, String projectName, int priority, int cores, int memory, int time) {
+        this.remoteService = remoteService;
+        this.projectJar = projectJar;
+        this.projectData = projectData;
+        this.clientName = clientName;
+        this.projectName = projectName;
+        this.priority = priority;
+        this.cores = cores;
+        this.memory = memory;
+        this.time = time;
+    }
+
+    @Override
+    public Object call() throws Exception {
+        try {
+            transfer();
+            notifier.completed(bytesSent);
+            return null;
+        } catch (Exception e) {
+            notifier.failed(e);
+            throw e;
+        }
+    }
+
+    private void transfer() throws Exception {
+        try {
+            ArrayList<ContentChunker.Chunk> jarChunks = ContentChunker.split(projectJar);
+            ArrayList<ContentChunker.Chunk> dataChunks = ContentChunker.split(projectData);
+            HashSet<String> missing = new HashSet<>(remoteService.getMissingChunks(clientName, getUniqueHashes(jarChunks, dataChunks)));
+            ArrayList<ContentChunker.Chunk> toSend = new ArrayList<>();
+            ArrayList<Path> sources = new ArrayList<>();
+            long size = selectChunks(jarChunks, projectJar, missing, toSend, sources);
+            size += selectChunks(dataChunks, projectData, missing, toSend, sources);
+            hasStarted = true;
+            notifier.started(size);
+            if (!toSend.isEmpty()) {
+                sendChunks(toSend, sources, size);
+            }
+            if (!remoteService.uploadProjectFromChunks(clientName, projectName, priority, cores, memory, time,
+                    getHashes(jarChunks), getHashes(dataChunks))) {
+                throw new IOException("Server couldn't assemble project " + projectName + " from uploaded chunks");
+            }
+            hasCompleted = true;
+        } catch (RemoteException e) {
+            throw e;
+        } catch (IOException e) {
+            throw new IOException("Problem during accessing project file: " + projectName, e);
+        }
+    }
+
+    private void sendChunks(ArrayList<ContentChunker.Chunk> chunks, ArrayList<Path> sources, long size) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(ContentChunker.MAX_CHUNK_SIZE);
+        FileChannel channel = null;
+        Path opened = null;
+        try (Pipe pipe = remoteService.uploadChunks(clientName, null)) {
+            for (int i = 0; i < chunks.size(); i++) {
+                ContentChunker.Chunk chunk = chunks.get(i);
+                if (!sources.get(i).equals(opened)) {
+                    if (channel != null) {
+                        channel.close();
+                    }
+                    opened = sources.get(i);
+                    channel = FileChannel.open(opened, StandardOpenOption.READ);
+                }
+                buffer.clear();
+                buffer.limit(chunk.getLength());
+                while (buffer.hasRemaining()) {
+                    if (channel.read(buffer, chunk.getOffset() + buffer.position()) < 0) {
+                        throw new IOException("Unexpected end of file " + opened);
+                    }
+                }
+                pipe.writeUTF(chunk.getHash());
+                pipe.writeInt(chunk.getLength());
+                pipe.write(buffer.array(), 0, chunk.getLength());
+                bytesSent += chunk.getLength();
+                uploadProgress = (int) Math.ceil(100 / (float) size * bytesSent);
+                notifier.progressed(bytesSent);
+            }
+            pipe.writeUTF("");
+            pipe.flush();
+            int stored = pipe.readInt();
+            if (stored != chunks.size()) {
+                throw new IOException("Server stored only " + stored + " of " + chunks.size() + " uploaded chunks");
+            }
+        } finally {
+            if (channel != null) {
+                channel.close();
+            }
+        }
+    }
+
+    private long selectChunks(ArrayList<ContentChunker.Chunk> chunks, Path source, HashSet<String> missing,
+            ArrayList<ContentChunker.Chunk> toSend, ArrayList<Path> sources) {
+        long size = 0;
+        for (ContentChunker.Chunk chunk : chunks) {
+            if (missing.remove(chunk.getHash())) {
+                toSend.add(chunk);
+                sources.add(source);
+                size += chunk.getLength();
+            }
+        }
+        return size;
+    }
+
+    private static ArrayList<String> getHashes(ArrayList<ContentChunker.Chunk> chunks) {
+        ArrayList<String> hashes = new ArrayList<>(chunks.size());
+        for (ContentChunker.Chunk chunk : chunks) {
+            hashes.add(chunk.getHash());
+        }
+        return hashes;
+    }
+
+    private static ArrayList<String> getUniqueHashes(ArrayList<ContentChunker.Chunk> jarChunks, ArrayList<ContentChunker.Chunk> dataChunks) {
+        HashSet<String> hashes = new HashSet<>(getHashes(jarChunks));
+        hashes.addAll(getHashes(dataChunks));
+        return new ArrayList<>(hashes);
+    }
+
+    @Override
+    public synchronized int getProgress() {
+        return hasCompleted ? 100 : uploadProgress;
+    }
+
+    @Override
+    public boolean hasStarted() {
+        return hasStarted;
+    }
+
+    @Override
+    public boolean hasCompleted() {
+        return hasCompleted;
+    }
+
+    @Override
+    public void addTransferListener(TransferListener listener) {
+        notifier.addListener(listener);
+    }
+}
@@ -5,16 +5,19 @@
 package cz.cuni.mff.bc.api.network;
 
 import cz.cuni.mff.bc.api.main.IServer;
-import java.io.BufferedOutputStream;
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.rmi.RemoteException;
 import org.cojen.dirmi.Pipe;
 
 /**
- * Class used to download projects from the server
+ * Class used to download projects from the server. The project is downloaded
+ * to the partial file next to the destination. If the partial file of the same
+ * project file already exists, the downloading is resumed
  *
  * @author Jakub Hava
  */
@@ -28,6 +31,10 @@ public class Downloader implements IUpDown {
     private final String clientName;
     private final File downloadFile;
     private long downloadFileLength;
+    private boolean hasCompleted = false;
+    private final TransferNotifier notifier = new TransferNotifier();
+    private final TransferCodec preferredCodec;
+    private final CodecSelector codecSelector;
 
     /**
      * Constructor
@@ -38,6 +45,23 @@ public class Downloader implements IUpDown {
      * @param destination path where file will be downloaded
      */
     public Downloader(IServer remoteService, String clientName, String projectName, Path destination) {
+        this(remoteService, clientName, projectName, destination, TransferCodec.NONE, new CodecSelector());
+    }
+
+    /**
+     * Constructor
+     *
+     * @param remoteService remote interface implementation
+     * @param clientName client's name
+     * @param projectName project name
+     * @param destination path where file will be downloaded
+     * @param codec preferred transfer codec or null for automatic selection
+     * @param codecSelector selector used to negotiate the codec
+     */
+    public Downloader(IServer remoteService, String clientName, String projectName, Path destination,
+            TransferCodec codec, CodecSelector codecSelector) {
+        this.preferredCodec = codec;
+        this.codecSelector = codecSelector;
         this.remoteService = remoteService;
         this.projectName = projectName;
         this.clientName = clientName;
@@ -48,28 +72,51 @@ public class Downloader implements IUpDown {
 
     @Override
     public Object call() throws Exception {
+        try {
+            transfer();
+            notifier.completed(bytesReaded);
+            return null;
+        } catch (Exception e) {
+            notifier.failed(e);
+            throw e;
+        }
+    }
+
+    private void transfer() throws Exception {
+        String hash;
         try {
             downloadFileLength = remoteService.getProjectFileSize(clientName, projectName);
+            hash = remoteService.getProjectFileHash(clientName, projectName);
         } catch (RemoteException e) {
             throw new RemoteException("File length couldn't be find out due to network error");
         }
-        try (BufferedOutputStream out = new BufferedOutputStream(new FileOutputStream(downloadFile));
-                Pipe pipe = remoteService.downloadProject(clientName, projectName, null)) {
-
-            int n;
-            byte[] buffer = new byte[8192];
+        PartFile partFile = new PartFile(downloadFile.toPath(), hash);
+        long offset = partFile.getResumeOffset(downloadFileLength);
+        bytesReaded = offset;
+        TransferCodec codec = codecSelector.negotiate(remoteService, preferredCodec, null);
+        try (FileChannel out = FileChannel.open(partFile.getPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+                Pipe pipe = remoteService.downloadProject(clientName, projectName, offset, codec.name(), null)) {
+            out.truncate(offset);
+            CountingInputStream counter = new CountingInputStream(pipe.getInputStream());
+            InputStream in = codec.decode(counter);
+            long n;
             hasStarted = true;
-            while ((n = pipe.read(buffer)) > -1) {
-                out.write(buffer, 0, n);
+            notifier.started(downloadFileLength, offset);
+            while ((n = ChannelTransfer.transferChunk(in, out, bytesReaded, Long.MAX_VALUE)) > 0) {
                 bytesReaded = bytesReaded + n;
                 downloadProgress = (int) Math.ceil(100 / (float) downloadFileLength * bytesReaded);
+                notifier.progressed(bytesReaded);
             }
-
-            pipe.close();
-            return null;
+            // waiting for the pipe includes the encoding on the server
+            codecSelector.recordTransfer(codec, bytesReaded - offset, counter.getCount(), counter.getNanos() / 1000000, -1);
         } catch (IOException e) {
             throw new IOException("Problem durring accessing project file: " + projectName);
         }
+        if (bytesReaded != downloadFileLength) {
+            throw new IOException("Project file " + projectName + " has not been downloaded completely, downloading can be resumed");
+        }
+        partFile.complete();
+        hasCompleted = true;
     }
 
     @Override
@@ -83,8 +130,13 @@ public class Downloader implements IUpDown {
 
     }
 
+    @Override
+    public void addTransferListener(TransferListener listener) {
+        notifier.addListener(listener);
+    }
+
     @Override
     public boolean hasCompleted() {
-        return bytesReaded == downloadFile.length();
+        return hasCompleted;
     }
 }
@@ -34,6 +34,16 @@ public interface IUpDown extends Callable<Object> {
      */
     public boolean hasStarted();
 
+    /**
+     * Registers the listener which receives events about the progress of
+     * uploading or downloading. Implementations which don't emit the events
+     * ignore the listener
+     *
+     * @param listener listener to be registered
+     */
+    public default void addTransferListener(TransferListener listener) {
+    }
+
     @Override
     public Object call() throws Exception;
 }
@@ -0,0 +1,150 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package cz.cuni.mff.bc.api.network;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Input stream which decompresses the data compressed by LZOutputStream
+ *
+ * @author Jakub Hava
+ */
+class LZInputStream extends FilterInputStream {
+
+    private final DataInputStream dis;
+    private final byte[] block = new byte[LZOutputStream.BLOCK_SIZE];
+    private final byte[] compressed = new byte[LZOutputStream.BLOCK_SIZE + LZOutputStream.BLOCK_SIZE / 255 + 16];
+    private int position = 0;
+    private int length = 0;
+    private boolean finished = false;
+
+    /**
+     * Constructor
+     *
+     * @param in underlying input stream
+     */
+    LZInputStream(InputStream in) {
+        super(in);
+        this.dis = new DataInputStream(in);
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!fill()) {
+            return -1;
+        }
+        return block[position++] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (!fill()) {
+            return -1;
+        }
+        int n = Math.min(len, length - position);
+        System.arraycopy(block, position, b, off, n);
+        position += n;
+        return n;
+    }
+
+    @Override
+    public int available() throws IOException {
+        return length - position;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    private boolean fill() throws IOException {
+        while (position == length) {
+            if (finished) {
+                return false;
+            }
+            int rawLength;
+            try {
+                rawLength = dis.readInt();
+            } catch (EOFException e) {
+                finished = true;
+                return false;
+            }
+            if (rawLength == 0) {
+                finished = true;
+                return false;
+            }
+            if (rawLength < 0 || rawLength > block.length) {
+                throw new IOException("Corrupted LZ stream: invalid block length");
+            }
+            int compressedLength = dis.readInt();
+            if (compressedLength == 0) {
+                dis.readFully(block, 0, rawLength);
+            } else {
+                if (compressedLength < 0 || compressedLength > compressed.length) {
+                    throw new IOException("Corrupted LZ stream: invalid compressed block length");
+                }
+                dis.readFully(compressed, 0, compressedLength);
+                decompress(compressed, compressedLength, block, rawLength);
+            }
+            position = 0;
+            length = rawLength;
+        }
+        return true;
+    }
+
+    private static void decompress(byte[] src, int srcLength, byte[] dst, int dstLength) throws IOException {
+        int ip = 0;
+        int op = 0;
+        try {
+            while (ip < srcLength) {
+                int token = src[ip++] & 0xff;
+                int literals = token >>> 4;
+                if (literals == 15) {
+                    int b;
+                    do {
+                        b = src[ip++] & 0xff;
+                        literals += b;
+                    } while (b == 255);
+                }
+                System.arraycopy(src, ip, dst, op, literals);
+                ip += literals;
+                op += literals;
+                if (ip >= srcLength) {
+                    break;
+                }
+                int offset = (src[ip] & 0xff) | (src[ip + 1] & 0xff) << 8;
+                ip += 2;
+                int matchLength = token & 15;
+                if (matchLength == 15) {
+                    int b;
+                    do {
+                        b = src[ip++] & 0xff;
+                        matchLength += b;
+                    } while (b == 255);
+                }
+                matchLength += LZOutputStream.MIN_MATCH;
+                int ref = op - offset;
+                if (offset == 0 || ref < 0) {
+                    throw new IOException("Corrupted LZ stream: invalid match offset");
+                }
+                for (int i = 0; i < matchLength; i++) {
+                    dst[op++] = dst[ref++];
+                }
+            }
+        } catch (ArrayIndexOutOfBoundsException e) {
+            throw new IOException("Corrupted LZ stream", e);
+        }
+        if (op != dstLength) {
+            throw new IOException("Corrupted LZ stream: invalid block length");
+        }
+    }
+}
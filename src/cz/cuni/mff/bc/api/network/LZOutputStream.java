@@ -0,0 +1,168 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package cz.cuni.mff.bc.api.network;
+
+import java.io.DataOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * Output stream which compresses the data by fast LZ77 family algorithm. Data
+ * are compressed in blocks of 64 kB. Each block starts with its uncompressed
+ * and compressed length, the block is stored without compression if it cannot
+ * be compressed. The end of the stream is marked by the block of zero length
+ *
+ * @author Jakub Hava
+ */
+class LZOutputStream extends FilterOutputStream {
+
+    static final int BLOCK_SIZE = 65536;
+    static final int MIN_MATCH = 4;
+    private static final int HASH_BITS = 12;
+    private static final int LAST_LITERALS = 5;
+    private final DataOutputStream dos;
+    private final byte[] block = new byte[BLOCK_SIZE];
+    private final byte[] compressed = new byte[BLOCK_SIZE + BLOCK_SIZE / 255 + 16];
+    private final int[] table = new int[1 << HASH_BITS];
+    private int length = 0;
+    private boolean finished = false;
+
+    /**
+     * Constructor
+     *
+     * @param out underlying output stream
+     */
+    LZOutputStream(OutputStream out) {
+        super(out);
+        this.dos = new DataOutputStream(out);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        block[length++] = (byte) b;
+        if (length == BLOCK_SIZE) {
+            writeBlock();
+        }
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        while (len > 0) {
+            int n = Math.min(len, BLOCK_SIZE - length);
+            System.arraycopy(b, off, block, length, n);
+            length += n;
+            off += n;
+            len -= n;
+            if (length == BLOCK_SIZE) {
+                writeBlock();
+            }
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        if (length > 0) {
+            writeBlock();
+        }
+        dos.flush();
+    }
+
+    /**
+     * Writes the remaining data and the end mark without closing the
+     * underlying stream
+     *
+     * @throws IOException
+     */
+    public void finish() throws IOException {
+        if (!finished) {
+            if (length > 0) {
+                writeBlock();
+            }
+            dos.writeInt(0);
+            dos.flush();
+            finished = true;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        finish();
+        dos.close();
+    }
+
+    private void writeBlock() throws IOException {
+        int compressedLength = compress(block, length, compressed);
+        dos.writeInt(length);
+        if (compressedLength < length) {
+            dos.writeInt(compressedLength);
+            dos.write(compressed, 0, compressedLength);
+        } else {
+            dos.writeInt(0);
+            dos.write(block, 0, length);
+        }
+        length = 0;
+    }
+
+    private static int readInt(byte[] b, int i) {
+        return (b[i] & 0xff) | (b[i + 1] & 0xff) << 8 | (b[i + 2] & 0xff) << 16 | (b[i + 3] & 0xff) << 24;
+    }
+
+    private static int writeLength(byte[] dst, int op, int len) {
+        while (len >= 255) {
+            dst[op++] = (byte) 255;
+            len -= 255;
+        }
+        dst[op++] = (byte) len;
+        return op;
+    }
+
+    private int compress(byte[] src, int srcLength, byte[] dst) {
+        Arrays.fill(table, 0);
+        int anchor = 0;
+        int op = 0;
+        int i = 0;
+        int limit = srcLength - LAST_LITERALS;
+        while (i + MIN_MATCH <= limit) {
+            int sequence = readInt(src, i);
+            int hash = (sequence * -1640531535) >>> (32 - HASH_BITS);
+            int ref = table[hash] - 1;
+            table[hash] = i + 1;
+            if (ref < 0 || readInt(src, ref) != sequence) {
+                i++;
+                continue;
+            }
+            int matchLength = MIN_MATCH;
+            while (i + matchLength < limit && src[ref + matchLength] == src[i + matchLength]) {
+                matchLength++;
+            }
+            op = writeSequence(src, anchor, i - anchor, dst, op, i - ref, matchLength);
+            i += matchLength;
+            anchor = i;
+        }
+        return writeSequence(src, anchor, srcLength - anchor, dst, op, 0, 0);
+    }
+
+    private static int writeSequence(byte[] src, int anchor, int literals, byte[] dst, int op, int offset, int matchLength) {
+        int token = op++;
+        int literalNibble = Math.min(literals, 15);
+        int matchNibble = matchLength == 0 ? 0 : Math.min(matchLength - MIN_MATCH, 15);
+        dst[token] = (byte) (literalNibble << 4 | matchNibble);
+        if (literalNibble == 15) {
+            op = writeLength(dst, op, literals - 15);
+        }
+        System.arraycopy(src, anchor, dst, op, literals);
+        op += literals;
+        if (matchLength > 0) {
+            dst[op++] = (byte) offset;
+            dst[op++] = (byte) (offset >>> 8);
+            if (matchNibble == 15) {
+                op = writeLength(dst, op, matchLength - MIN_MATCH - 15);
+            }
+        }
+        return op;
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package cz.cuni.mff.bc.api.network;
+
+import cz.cuni.mff.bc.api.main.CustomIO;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Partially downloaded file. The data are downloaded to the file with the .part
+ * suffix next to the destination and the hash of the complete file is stored
+ * in the sidecar file with the .part.info suffix. The downloading is resumed
+ * only if the sidecar contains the hash of the same file, so the stale or
+ * unrelated data are never extended. The complete file is verified and moved
+ * to the destination
+ *
+ * @author Jakub Hava
+ */
+public class PartFile {
+
+    private final Path destination;
+    private final Path part;
+    private final Path info;
+    private final String expectedHash;
+
+    /**
+     * Constructor
+     *
+     * @param destination path where the complete file is stored
+     * @param expectedHash SHA-256 hash of the complete file
+     */
+    public PartFile(Path destination, String expectedHash) {
+        this.destination = destination;
+        this.part = destination.resolveSibling(destination.getFileName() + ".part");
+        this.info = destination.resolveSibling(destination.getFileName() + ".part.info");
+        this.expectedHash = expectedHash;
+    }
+
+    /**
+     * Gets the path to the partial file
+     *
+     * @return path to the partial file
+     */
+    public Path getPath() {
+        return part;
+    }
+
+    /**
+     * Gets the offset from which the downloading continues. If the partial file
+     * doesn't belong to the expected file or it is not shorter than the
+     * complete file, it is discarded and the downloading starts from the
+     * beginning
+     *
+     * @param size size of the complete file
+     * @return offset from which the downloading continues
+     * @throws IOException
+     */
+    public long getResumeOffset(long size) throws IOException {
+        if (Files.isRegularFile(part) && Files.isRegularFile(info)
+                && new String(Files.readAllBytes(info), StandardCharsets.UTF_8).trim().equals(expectedHash)
+                && Files.size(part) < size) {
+            return Files.size(part);
+        }
+        Files.deleteIfExists(part);
+        Files.write(info, expectedHash.getBytes(StandardCharsets.UTF_8));
+        return 0;
+    }
+
+    /**
+     * Verifies the downloaded file and moves it to the destination
+     *
+     * @throws IOException if the hash of the downloaded file doesn't match,
+     * the partial file is discarded in such case
+     */
+    public void complete() throws IOException {
+        if (!CustomIO.getFileHash(part).equals(expectedHash)) {
+            Files.deleteIfExists(part);
+            Files.deleteIfExists(info);
+            throw new IOException("Hash of the downloaded file " + destination + " does not match the expected hash");
+        }
+        Files.move(part, destination, StandardCopyOption.REPLACE_EXISTING);
+        Files.deleteIfExists(info);
+    }
+}
@@ -51,7 +51,18 @@ public class ProgressChecker {
     }
 
     /**
-     * Gets the progress
+     * Registers the listener which receives events about the progress. Events
+     * emitted before the registration are not delivered to the listener
+     *
+     * @param listener listener to be registered
+     */
+    public void addTransferListener(TransferListener listener) {
+        upDown.addTransferListener(listener);
+    }
+
+    /**
+     * Gets the progress. In case of segmented transfer, the progress is
+     * aggregated across all segments
      *
      * @return percentage of the progress
      */
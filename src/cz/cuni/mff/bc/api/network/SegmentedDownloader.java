@@ -0,0 +1,133 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package cz.cuni.mff.bc.api.network;
+
+import cz.cuni.mff.bc.api.main.IServer;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.rmi.RemoteException;
+import java.util.Map;
+import java.util.TreeMap;
+import org.cojen.dirmi.Pipe;
+
+/**
+ * Class used to download projects from the server in several segments at once.
+ * Each segment is transferred through its own pipe and written to its position
+ * in the partial file. If the downloading fails, the partial file is cut after
+ * the data downloaded without gaps, so the next downloading is resumed from
+ * there. The complete file is verified by its hash and moved to the
+ * destination
+ *
+ * @author Jakub Hava
+ */
+public class SegmentedDownloader extends SegmentedTransfer {
+
+    private final IServer remoteService;
+    private final String projectName;
+    private final String clientName;
+    private final Path destination;
+    private FileChannel channel;
+    private final TreeMap<Long, long[]> segmentProgress = new TreeMap<>();
+
+    /**
+     * Constructor
+     *
+     * @param remoteService remote interface implementation
+     * @param clientName client's name
+     * @param projectName project name
+     * @param destination path where file will be downloaded
+     * @param segments maximal number of concurrently downloaded segments
+     */
+    public SegmentedDownloader(IServer remoteService, String clientName, String projectName, Path destination, int segments) {
+        super(segments);
+        this.remoteService = remoteService;
+        this.projectName = projectName;
+        this.clientName = clientName;
+        this.destination = destination;
+    }
+
+    @Override
+    protected void transferSegment(long offset, long length) throws IOException {
+        try (Pipe pipe = remoteService.downloadProjectSegment(clientName, projectName, offset, length, null)) {
+            InputStream in = pipe.getInputStream();
+            long n;
+            long position = offset;
+            long end = offset + length;
+            long[] progress = new long[]{end, offset};
+            synchronized (segmentProgress) {
+                segmentProgress.put(offset, progress);
+            }
+            while (position < end && (n = ChannelTransfer.transferChunk(in, channel, position, end - position)) > 0) {
+                position += n;
+                synchronized (segmentProgress) {
+                    progress[1] = position;
+                }
+                addTransferredBytes(n);
+            }
+            if (position < end) {
+                throw new EOFException("Segment of project file " + projectName + " ended " + (end - position) + " bytes early");
+            }
+        }
+    }
+
+    /**
+     * Gets the end of the data downloaded without gaps
+     *
+     * @param start position from which the downloading started
+     * @return end of the data downloaded without gaps
+     */
+    private long getContiguousEnd(long start) {
+        synchronized (segmentProgress) {
+            long end = start;
+            for (Map.Entry<Long, long[]> segment : segmentProgress.entrySet()) {
+                if (segment.getKey() != end) {
+                    break;
+                }
+                end = segment.getValue()[1];
+                if (end < segment.getValue()[0]) {
+                    break;
+                }
+            }
+            return end;
+        }
+    }
+
+    @Override
+    protected void transfer() throws Exception {
+        long size;
+        String hash;
+        try {
+            size = remoteService.getProjectFileSize(clientName, projectName);
+            hash = remoteService.getProjectFileHash(clientName, projectName);
+        } catch (RemoteException e) {
+            throw new RemoteException("File length couldn't be find out due to network error");
+        }
+        PartFile partFile = new PartFile(destination, hash);
+        long start = partFile.getResumeOffset(size);
+        try (RandomAccessFile file = new RandomAccessFile(partFile.getPath().toFile(), "rw")) {
+            file.setLength(size);
+            channel = file.getChannel();
+            try {
+                transferSegments(start, size);
+            } catch (IOException e) {
+                // keep only the data without gaps, so the downloading can be resumed
+                file.setLength(getContiguousEnd(start));
+                throw e;
+            }
+        } catch (RemoteException e) {
+            throw e;
+        } catch (IOException e) {
+            throw new IOException("Problem durring accessing project file: " + projectName + ", downloading can be resumed", e);
+        }
+        if (getTransferredBytes() != size) {
+            throw new IOException("Project file " + projectName + " has not been downloaded completely");
+        }
+        partFile.complete();
+    }
+}
@@ -0,0 +1,173 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package cz.cuni.mff.bc.api.network;
+
+import java.io.IOException;
+import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Base class for transfers which split the file into several byte ranges and
+ * transfer each of them concurrently through its own pipe. The progress is
+ * aggregated across all segments
+ *
+ * @author Jakub Hava
+ */
+public abstract class SegmentedTransfer implements IUpDown {
+
+    /**
+     * Minimal size of one segment in bytes
+     */
+    public static final long MIN_SEGMENT_SIZE = 1024 * 1024;
+    private final int segments;
+    private final AtomicLong bytesTransferred = new AtomicLong();
+    private volatile boolean hasStarted = false;
+    private volatile long size;
+    private final TransferNotifier notifier = new TransferNotifier();
+
+    /**
+     * Constructor
+     *
+     * @param segments maximal number of concurrently transferred segments
+     */
+    protected SegmentedTransfer(int segments) {
+        if (segments <= 0) {
+            throw new IllegalArgumentException("Number of segments has to be integer higher then 0");
+        }
+        this.segments = segments;
+    }
+
+    /**
+     * Does the whole transfer. Implementations prepare the file and call
+     * transferSegments
+     *
+     * @throws Exception
+     */
+    protected abstract void transfer() throws Exception;
+
+    /**
+     * Transfers one segment of the file
+     *
+     * @param offset position of the segment in the file
+     * @param length length of the segment in bytes
+     * @throws IOException
+     */
+    protected abstract void transferSegment(long offset, long length) throws IOException;
+
+    /**
+     * Adds the number of transferred bytes to the overall progress
+     *
+     * @param bytes number of transferred bytes
+     */
+    protected void addTransferredBytes(long bytes) {
+        notifier.progressed(bytesTransferred.addAndGet(bytes));
+    }
+
+    /**
+     * Gets the number of bytes transferred in all segments
+     *
+     * @return number of transferred bytes
+     */
+    protected long getTransferredBytes() {
+        return bytesTransferred.get();
+    }
+
+    /**
+     * Splits the file into segments and transfers them concurrently
+     *
+     * @param size size of the file in bytes
+     * @throws IOException
+     */
+    protected void transferSegments(long size) throws IOException {
+        transferSegments(0, size);
+    }
+
+    /**
+     * Splits the rest of the file from the start position into segments and
+     * transfers them concurrently. Bytes before the start position are counted
+     * as already transferred
+     *
+     * @param start position from which the file is transferred
+     * @param size size of the file in bytes
+     * @throws IOException
+     */
+    protected void transferSegments(long start, long size) throws IOException {
+        this.size = size;
+        bytesTransferred.set(start);
+        long remaining = size - start;
+        int count = (int) Math.max(1, Math.min(segments, remaining / MIN_SEGMENT_SIZE));
+        long segmentLength = (remaining + count - 1) / count;
+        ExecutorService executor = Executors.newFixedThreadPool(count);
+        notifier.started(size, start);
+        try {
+            ArrayList<Future<Object>> futures = new ArrayList<>();
+            for (int i = 0; i < count; i++) {
+                final long offset = start + i * segmentLength;
+                final long length = Math.min(segmentLength, size - offset);
+                futures.add(executor.submit(new Callable<Object>() {
+                    @Override
+                    public Object call() throws Exception {
+                        transferSegment(offset, length);
+                        return null;
+                    }
+                }));
+            }
+            hasStarted = true;
+            for (Future<Object> future : futures) {
+                future.get();
+            }
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RemoteException) {
+                throw (RemoteException) e.getCause();
+            }
+            throw new IOException(e.getCause().getMessage(), e.getCause());
+        } catch (InterruptedException e) {
+            throw new IOException("Segmented transfer has been interrupted", e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Override
+    public Object call() throws Exception {
+        try {
+            transfer();
+            notifier.completed(bytesTransferred.get());
+            return null;
+        } catch (Exception e) {
+            notifier.failed(e);
+            throw e;
+        }
+    }
+
+    @Override
+    public void addTransferListener(TransferListener listener) {
+        notifier.addListener(listener);
+    }
+
+    @Override
+    public int getProgress() {
+        if (size == 0) {
+            return 0;
+        }
+        return (int) Math.ceil(100 / (float) size * bytesTransferred.get());
+    }
+
+    @Override
+    public boolean hasStarted() {
+        return hasStarted;
+    }
+
+    @Override
+    public boolean hasCompleted() {
+        return hasStarted && bytesTransferred.get() == size;
+    }
+}
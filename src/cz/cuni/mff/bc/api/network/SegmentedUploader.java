@@ -0,0 +1,105 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package cz.cuni.mff.bc.api.network;
+
+import cz.cuni.mff.bc.api.main.CustomIO;
+import cz.cuni.mff.bc.api.main.IServer;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.rmi.RemoteException;
+import java.util.zip.Deflater;
+import org.cojen.dirmi.Pipe;
+
+/**
+ * Class used to upload projects to the server in several segments at once.
+ * Each segment is read from its position in the prepared file and transferred
+ * through its own pipe
+ *
+ * @author Jakub Hava
+ */
+public class SegmentedUploader extends SegmentedTransfer {
+
+    private final IServer remoteService;
+    private final Path projectJar;
+    private final Path projectData;
+    private final Path temporaryDir;
+    private final String clientName;
+    private final String projectName;
+    private final int priority;
+    private final int cores;
+    private final int memory;
+    private final int time;
+    private FileChannel channel;
+
+    /**
+     * Constructor
+     *
+     * @param remoteService remote interface implementation
+     * @param projectJar path to project jar
+     * @param projectData path to project data
+     * @param temporaryDir path to temporary directory
+     * @param clientName client's name
+     * @param projectName project name
+     * @param priority project priority
+     * @param cores number of cores needed by task
+     * @param memory amount of memory needed by task
+     * @param time average time of task to be calculated
+     * @param segments maximal number of concurrently uploaded segments
+     */
+    public SegmentedUploader(IServer remoteService, Path projectJar, Path projectData, Path temporaryDir,
+            String clientName, String projectName, int priority, int cores, int memory, int time, int segments) {
+        super(segments);
+        this.remoteService = remoteService;
+        this.projectJar = projectJar;
+        this.projectData = projectData;
+        this.temporaryDir = temporaryDir;
+        this.clientName = clientName;
+        this.projectName = projectName;
+        this.priority = priority;
+        this.cores = cores;
+        this.memory = memory;
+        this.time = time;
+    }
+
+    @Override
+    protected void transferSegment(long offset, long length) throws IOException {
+        try (Pipe pipe = remoteService.uploadProjectSegment(clientName, projectName, offset, length, null)) {
+            OutputStream out = pipe.getOutputStream();
+            long position = offset;
+            long end = offset + length;
+            while (position < end) {
+                long n = ChannelTransfer.transferChunk(channel, position, end - position, out);
+                if (n <= 0) {
+                    throw new IOException("Unexpected end of file during uploading project " + projectName);
+                }
+                position += n;
+                addTransferredBytes(n);
+            }
+        }
+    }
+
+    @Override
+    protected void transfer() throws Exception {
+        File tmp = Files.createTempFile(temporaryDir, clientName, projectName + ".zip").toFile();
+        CustomIO.recursiveDeleteOnShutdownHook(tmp.toPath());
+        CustomIO.zipFilesParallel(tmp, new File[]{projectJar.toFile(), projectData.toFile()}, Deflater.DEFAULT_COMPRESSION);
+        long size = tmp.length();
+        try (RandomAccessFile file = new RandomAccessFile(tmp, "r")) {
+            channel = file.getChannel();
+            remoteService.prepareSegmentedUpload(clientName, projectName, priority, cores, memory, time, size);
+            transferSegments(size);
+            remoteService.finishSegmentedUpload(clientName, projectName);
+        } catch (RemoteException e) {
+            throw e;
+        } catch (IOException e) {
+            throw new IOException("Problem during accessing project file: " + projectName, e);
+        }
+    }
+}
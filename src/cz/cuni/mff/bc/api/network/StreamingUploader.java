@@ -0,0 +1,136 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package cz.cuni.mff.bc.api.network;
+
+import cz.cuni.mff.bc.api.main.IServer;
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import org.cojen.dirmi.Pipe;
+
+/**
+ * Class used to upload projects to the server without creating temporary zip
+ * file. Project jar and project data are compressed directly into the pipe,
+ * the progress is computed from the number of source bytes already compressed
+ *
+ * @author Jakub Hava
+ */
+public class StreamingUploader implements IUpDown {
+
+    private volatile boolean hasStarted = false;
+    private volatile boolean hasCompleted = false;
+    private final IServer remoteService;
+    private final Path projectJar;
+    private final Path projectData;
+    private volatile int uploadProgress;
+    private long bytesReaded;
+    private long sourceSize;
+    private final String clientName;
+    private final String projectName;
+    private final int priority;
+    private final int cores;
+    private final int memory;
+    private final int time;
+    private final TransferNotifier notifier = new TransferNotifier();
+
+    /**
+     * Constructor
+     *
+     * @param remoteService remote interface implementation
+     * @param projectJar path to project jar
+     * @param projectData path to project data
+     * @param clientName client's name
+     * @param projectName project name
+     * @param priority project priority
+     * @param cores number of cores needed by task
+     * @param memory amount of memory needed by task
+     * @param time average time of task to be calculated
+     */
+    public StreamingUploader(IServer remoteService, Path projectJar, Path projectData,
+            String clientName, String projectName, int priority, int cores, int memory, int time) {
+        this.remoteService = remoteService;
+        this.projectJar = projectJar;
+        this.projectData = projectData;
+        this.clientName = clientName;
+        this.projectName = projectName;
+        this.priority = priority;
+        this.cores = cores;
+        this.memory = memory;
+        this.time = time;
+        this.uploadProgress = 0;
+        this.bytesReaded = 0;
+    }
+
+    private void appendToZip(File file, ZipOutputStream zos, byte[] buffer) throws IOException {
+        zos.putNextEntry(new ZipEntry(file.getName()));
+        try (BufferedInputStream in = new BufferedInputStream(new FileInputStream(file))) {
+            int n;
+            while ((n = in.read(buffer)) > 0) {
+                zos.write(buffer, 0, n);
+                bytesReaded = bytesReaded + n;
+                uploadProgress = (int) Math.ceil(100 / (float) sourceSize * bytesReaded);
+                notifier.progressed(bytesReaded);
+            }
+        }
+        zos.closeEntry();
+    }
+
+    @Override
+    public Object call() throws Exception {
+        try {
+            transfer();
+            notifier.completed(bytesReaded);
+            return null;
+        } catch (Exception e) {
+            notifier.failed(e);
+            throw e;
+        }
+    }
+
+    private void transfer() throws Exception {
+        File[] files = new File[]{projectJar.toFile(), projectData.toFile()};
+        for (File file : files) {
+            sourceSize = sourceSize + file.length();
+        }
+        try (Pipe pipe = remoteService.uploadProject(clientName, projectName, priority, cores, memory, time, null)) {
+            ZipOutputStream zos = new ZipOutputStream(pipe.getOutputStream());
+            byte[] buffer = new byte[8192];
+            hasStarted = true;
+            notifier.started(sourceSize);
+            for (File file : files) {
+                appendToZip(file, zos, buffer);
+            }
+            zos.finish();
+            zos.flush();
+        } catch (IOException e) {
+            throw new IOException("Problem during accessing project file: " + projectName);
+        }
+        hasCompleted = true;
+    }
+
+    @Override
+    public int getProgress() {
+        return uploadProgress;
+    }
+
+    @Override
+    public boolean hasStarted() {
+        return hasStarted;
+    }
+
+    @Override
+    public void addTransferListener(TransferListener listener) {
+        notifier.addListener(listener);
+    }
+
+    @Override
+    public boolean hasCompleted() {
+        return hasCompleted;
+    }
+}
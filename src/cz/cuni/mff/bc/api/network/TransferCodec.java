@@ -0,0 +1,81 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package cz.cuni.mff.bc.api.network;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Codecs used to compress the data sent through the pipes. The codec is
+ * negotiated with the server for each transfer, the name of the constant is
+ * used as the codec name
+ *
+ * @author Jakub Hava
+ */
+public enum TransferCodec {
+
+    /**
+     * Data are sent without compression
+     */
+    NONE {
+        @Override
+        public OutputStream encode(OutputStream out) {
+            return out;
+        }
+
+        @Override
+        public InputStream decode(InputStream in) {
+            return in;
+        }
+    },
+    /**
+     * Data are compressed by deflate algorithm. It is slow, but it has good
+     * compression ratio
+     */
+    DEFLATE {
+        @Override
+        public OutputStream encode(OutputStream out) {
+            return new DeflaterOutputStream(out);
+        }
+
+        @Override
+        public InputStream decode(InputStream in) {
+            return new InflaterInputStream(in);
+        }
+    },
+    /**
+     * Data are compressed by fast LZ77 family algorithm
+     */
+    LZ {
+        @Override
+        public OutputStream encode(OutputStream out) {
+            return new LZOutputStream(out);
+        }
+
+        @Override
+        public InputStream decode(InputStream in) {
+            return new LZInputStream(in);
+        }
+    };
+
+    /**
+     * Wraps the stream which encodes the data. The returned stream has to be
+     * closed to write all encoded data
+     *
+     * @param out stream to which the encoded data are written
+     * @return stream which encodes the data
+     */
+    public abstract OutputStream encode(OutputStream out);
+
+    /**
+     * Wraps the stream which decodes the data
+     *
+     * @param in stream from which the encoded data are read
+     * @return stream which decodes the data
+     */
+    public abstract InputStream decode(InputStream in);
+}
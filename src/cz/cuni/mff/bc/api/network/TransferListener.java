@@ -0,0 +1,45 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package cz.cuni.mff.bc.api.network;
+
+/**
+ * Listener which receives events about the progress of uploading or
+ * downloading. Events are emitted directly from the transfer thread
+ *
+ * @author Jakub Hava
+ */
+public interface TransferListener {
+
+    /**
+     * Called when the transfer has started
+     *
+     * @param totalBytes number of bytes to be transferred
+     */
+    public void transferStarted(long totalBytes);
+
+    /**
+     * Called when the transfer has progressed
+     *
+     * @param bytes number of bytes already transferred
+     * @param totalBytes number of bytes to be transferred
+     * @param rate transfer rate in bytes per second
+     * @param eta estimated remaining time in milliseconds, -1 if it is not known
+     */
+    public void transferProgressed(long bytes, long totalBytes, long rate, long eta);
+
+    /**
+     * Called when the transfer has completed successfully
+     *
+     * @param bytes number of transferred bytes
+     */
+    public void transferCompleted(long bytes);
+
+    /**
+     * Called when the transfer has failed
+     *
+     * @param e exception which caused the failure
+     */
+    public void transferFailed(Exception e);
+}
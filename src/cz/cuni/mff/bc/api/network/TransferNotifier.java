@@ -0,0 +1,114 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package cz.cuni.mff.bc.api.network;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Distributes transfer events to the registered listeners. Progress events are
+ * emitted at most once per notification interval
+ *
+ * @author Jakub Hava
+ */
+public class TransferNotifier {
+
+    /**
+     * Minimal interval between two progress events in milliseconds
+     */
+    public static final long NOTIFY_INTERVAL = 100;
+    private final CopyOnWriteArrayList<TransferListener> listeners = new CopyOnWriteArrayList<>();
+    private long totalBytes;
+    private long startOffset;
+    private long startTime;
+    private long lastNotification;
+
+    /**
+     * Registers the listener
+     *
+     * @param listener listener to be registered
+     */
+    public void addListener(TransferListener listener) {
+        if (listener != null) {
+            listeners.add(listener);
+        }
+    }
+
+    /**
+     * Removes the listener
+     *
+     * @param listener listener to be removed
+     */
+    public void removeListener(TransferListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Emits the started event
+     *
+     * @param totalBytes number of bytes to be transferred
+     */
+    public synchronized void started(long totalBytes) {
+        started(totalBytes, 0);
+    }
+
+    /**
+     * Emits the started event of the resumed transfer. Bytes transferred
+     * before the resume are not counted to the transfer rate
+     *
+     * @param totalBytes number of bytes of the complete transfer
+     * @param startOffset number of bytes transferred before the resume
+     */
+    public synchronized void started(long totalBytes, long startOffset) {
+        this.totalBytes = totalBytes;
+        this.startOffset = startOffset;
+        this.startTime = System.currentTimeMillis();
+        this.lastNotification = startTime;
+        for (TransferListener listener : listeners) {
+            listener.transferStarted(totalBytes);
+        }
+    }
+
+    /**
+     * Emits the progress event if the notification interval has elapsed since
+     * the last progress event
+     *
+     * @param bytes number of bytes already transferred
+     */
+    public synchronized void progressed(long bytes) {
+        long now = System.currentTimeMillis();
+        if (now - lastNotification < NOTIFY_INTERVAL) {
+            return;
+        }
+        lastNotification = now;
+        long elapsed = Math.max(1, now - startTime);
+        long rate = (bytes - startOffset) * 1000 / elapsed;
+        long eta = rate > 0 ? (totalBytes - bytes) * 1000 / rate : -1;
+        for (TransferListener listener : listeners) {
+            listener.transferProgressed(bytes, totalBytes, rate, eta);
+        }
+    }
+
+    /**
+     * Emits the completed event
+     *
+     * @param bytes number of transferred bytes
+     */
+    public void completed(long bytes) {
+        for (TransferListener listener : listeners) {
+            listener.transferCompleted(bytes);
+        }
+    }
+
+    /**
+     * Emits the failed event
+     *
+     * @param e exception which caused the failure
+     */
+    public void failed(Exception e) {
+        for (TransferListener listener : listeners) {
+            listener.transferFailed(e);
+        }
+    }
+}
@@ -6,12 +6,14 @@ package cz.cuni.mff.bc.api.network;
 
 import cz.cuni.mff.bc.api.main.CustomIO;
 import cz.cuni.mff.bc.api.main.IServer;
-import java.io.BufferedInputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.Deflater;
 import org.cojen.dirmi.Pipe;
 
 /**
@@ -35,6 +37,9 @@ public class Uploader implements IUpDown {
     private final int memory;
     private final int time;
     private File tmp;
+    private final TransferCodec preferredCodec;
+    private final CodecSelector codecSelector;
+    private final TransferNotifier notifier = new TransferNotifier();
 
     /**
      * Constructor
@@ -52,6 +57,31 @@ public class Uploader implements IUpDown {
      */
     public Uploader(IServer remoteService, Path projectJar, Path projectData, Path temporaryDir,
             String clientName, String projectName, int priority, int cores, int memory, int time) {
+        this(remoteService, projectJar, projectData, temporaryDir, clientName, projectName, priority, cores, memory, time,
+                TransferCodec.NONE, new CodecSelector());
+    }
+
+    /**
+     * Constructor
+     *
+     * @param remoteService remote interface implementation
+     * @param projectJar path to project jar
+     * @param projectData path to project data
+     * @param temporaryDir path to temporary directory
+     * @param clientName client's name
+     * @param projectName project name
+     * @param priority project priority
+     * @param cores number of cores needed by task
+     * @param memory amount of memory needed by task
+     * @param time average time of task to be calculated
+     * @param codec preferred transfer codec or null for automatic selection
+     * @param codecSelector selector used to negotiate the codec
+     */
+    public Uploader(IServer remoteService, Path projectJar, Path projectData, Path temporaryDir,
+            String clientName, String projectName, int priority, int cores, int memory, int time,
+            TransferCodec codec, CodecSelector codecSelector) {
+        this.preferredCodec = codec;
+        this.codecSelector = codecSelector;
         this.remoteService = remoteService;
         this.projectJar = projectJar;
         this.projectData = projectData;
@@ -67,27 +97,42 @@ public class Uploader implements IUpDown {
     }
 
     private void prepareFileToUpload(File projectJar, File projectData, File tmp) throws IOException {
-        CustomIO.zipFiles(tmp, new File[]{projectJar, projectData});
+        CustomIO.zipFilesParallel(tmp, new File[]{projectJar, projectData}, Deflater.DEFAULT_COMPRESSION);
     }
 
     @Override
     public Object call() throws Exception {
+        try {
+            transfer();
+            notifier.completed(bytesReaded);
+            return null;
+        } catch (Exception e) {
+            notifier.failed(e);
+            throw e;
+        }
+    }
+
+    private void transfer() throws Exception {
         tmp = Files.createTempFile(temporaryDir, clientName, projectName + ".zip").toFile();
         CustomIO.recursiveDeleteOnShutdownHook(tmp.toPath());
         prepareFileToUpload(projectJar.toFile(), projectData.toFile(), tmp);
         long size = tmp.length();
-        try (BufferedInputStream in = new BufferedInputStream(new FileInputStream(tmp));
-                Pipe pipe = remoteService.uploadProject(clientName, projectName, priority, cores, memory, time, null)) {
-            int n;
-            byte[] buffer = new byte[8192];
+        TransferCodec codec = codecSelector.negotiate(remoteService, preferredCodec, tmp.toPath());
+        try (FileChannel in = FileChannel.open(tmp.toPath(), StandardOpenOption.READ);
+                Pipe pipe = remoteService.uploadProject(clientName, projectName, priority, cores, memory, time, codec.name(), null)) {
+            CountingOutputStream counter = new CountingOutputStream(pipe.getOutputStream());
+            OutputStream encoded = codec.encode(counter);
+            long n;
             hasStarted = true;
-            while ((n = in.read(buffer)) > 0) {
-                pipe.write(buffer, 0, n);
+            notifier.started(size);
+            while (bytesReaded < size && (n = ChannelTransfer.transferChunk(in, bytesReaded, size - bytesReaded, encoded)) > 0) {
                 bytesReaded = bytesReaded + n;
                 uploadProgress = (int) Math.ceil(100 / (float) size * bytesReaded);
+                notifier.progressed(bytesReaded);
             }
-            pipe.close();
-            return null;
+            encoded.close();
+            // encoding is done locally, so the time spent in the pipe is the link time
+            codecSelector.recordTransfer(codec, bytesReaded, counter.getCount(), counter.getNanos() / 1000000, 0);
         } catch (IOException e) {
             throw new IOException("Problem during accessing project file: " + projectName);
         }
@@ -104,6 +149,11 @@ public class Uploader implements IUpDown {
 
     }
 
+    @Override
+    public void addTransferListener(TransferListener listener) {
+        notifier.addListener(listener);
+    }
+
     @Override
     public boolean hasCompleted() {
         if (!tmp.exists()) {